@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd.autoconfigure;
+
+import org.springframework.boot.actuate.autoconfigure.ConditionalOnEnabledHealthIndicator;
+import org.springframework.boot.actuate.autoconfigure.EndpointAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.HealthIndicatorAutoConfiguration;
+import org.springframework.boot.actuate.endpoint.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zalando.boot.etcd.EtcdClient;
+
+/**
+ * The auto configuration of the actuator health indicator and endpoint of an
+ * existing etcd client.
+ */
+@Configuration
+@ConditionalOnClass(Endpoint.class)
+@ConditionalOnBean(EtcdClient.class)
+@AutoConfigureAfter(EtcdClientAutoConfiguration.class)
+@AutoConfigureBefore({ EndpointAutoConfiguration.class, HealthIndicatorAutoConfiguration.class })
+public class EtcdActuatorAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean(name = "etcdHealthIndicator")
+	@ConditionalOnEnabledHealthIndicator("etcd")
+	public EtcdHealthIndicator etcdHealthIndicator(EtcdClient client) {
+		return new EtcdHealthIndicator(client);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public EtcdEndpoint etcdEndpoint(EtcdClient client) {
+		return new EtcdEndpoint(client);
+	}
+}
@@ -23,16 +23,9 @@
  */
 package org.zalando.boot.etcd.autoconfigure;
 
-import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 
-import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
-import javax.naming.directory.Attribute;
-import javax.naming.directory.Attributes;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -42,7 +35,17 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.zalando.boot.etcd.AbstractEtcdMemberSelector;
+import org.zalando.boot.etcd.EtcdBackoffRetryPolicy;
+import org.zalando.boot.etcd.CachingEtcdClient;
 import org.zalando.boot.etcd.EtcdClient;
+import org.zalando.boot.etcd.EtcdClientInterceptor;
+import org.zalando.boot.etcd.EtcdEwmaMemberSelector;
+import org.zalando.boot.etcd.EtcdPoolingRequestFactory;
+import org.zalando.boot.etcd.EtcdPowerOfTwoChoicesMemberSelector;
+import org.zalando.boot.etcd.EtcdRetryBudget;
+import org.zalando.boot.etcd.EtcdRoundRobinMemberSelector;
+import org.zalando.boot.etcd.EtcdSrvDiscovery;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -56,6 +59,184 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @ConditionalOnMissingBean(EtcdClient.class)
 public class EtcdClientAutoConfiguration {
 
+	/**
+	 * Creates an etcd client for the given locations configured by the given
+	 * properties.
+	 * 
+	 * @param properties
+	 *            the properties
+	 * @param locations
+	 *            the locations
+	 * @return the etcd client
+	 */
+	static EtcdClient createClient(EtcdClientProperties properties, String[] locations) {
+		EtcdClient client;
+		if (properties.getCache().isEnabled()) {
+			if (properties.getCache().getRoot() == null) {
+				// a default root of / would read the whole keyspace
+				throw new IllegalArgumentException("The etcd cache requires zalando.etcd.cache.root to be set.");
+			}
+			CachingEtcdClient cachingClient = new CachingEtcdClient(locations);
+			cachingClient.setCacheRoot(properties.getCache().getRoot());
+			cachingClient.setMaximumSize(properties.getCache().getMaximumSize());
+			client = cachingClient;
+		} else {
+			client = new EtcdClient(locations);
+		}
+
+		client.setRetryCount(properties.getRetryCount());
+		client.setRetryDuration(properties.getRetryDuration());
+		client.setRetryPolicy(createRetryPolicy(properties));
+		client.setRetryBudget(properties.getRetryBudgetBurst() > 0
+				? new EtcdRetryBudget(properties.getRetryBudgetRatio(), properties.getRetryBudgetBurst()) : null);
+		client.setLocationUpdaterEnabled(properties.isUpdateLocations());
+		client.setUpdateInterval(properties.getUpdateInterval());
+		client.setMaxUpdateInterval(properties.getMaxUpdateInterval());
+		client.setProbeTimeout(properties.getProbeTimeout());
+		client.setWarmUpEnabled(properties.isWarmUp());
+		client.setWarmUpTimeout(properties.getWarmUpTimeout());
+		client.setReadCoalescingEnabled(properties.isCoalesceReads());
+		client.setBatchConcurrency(properties.getBatchConcurrency());
+		client.setMemberSelector(createMemberSelector(properties));
+		client.setLeaderRoutingEnabled(properties.isLeaderRouting());
+		client.setHedgingEnabled(properties.isHedgeReads());
+		client.setHedgeDelay(properties.getHedgeDelay());
+		client.setHedgePercentile(properties.getHedgePercentile());
+
+		if (properties.getPool().isEnabled()) {
+			EtcdPoolingRequestFactory requestFactory = createPoolingRequestFactory(properties,
+					properties.getReadTimeout(), properties.getPool().getMaxConnectionsPerLocation(),
+					properties.getPool().getMaxConnections());
+			if (properties.getPool().getWarmUpConnections() > 0) {
+				requestFactory.warmUp(locations, properties.getPool().getWarmUpConnections());
+			}
+			client.setRequestFactory(requestFactory);
+			// every watch holds its connection until it fires or times out, so
+			// watches must not wait for the connections of regular requests
+			client.setWatchRequestFactory(createPoolingRequestFactory(properties, properties.getWatchTimeout(),
+					properties.getPool().getMaxWatchConnectionsPerLocation(), Integer.MAX_VALUE));
+		} else {
+			setSimpleRequestFactories(client, properties);
+		}
+
+		return client;
+	}
+
+	/**
+	 * Creates a minimal etcd client for the given locations configured by the
+	 * given properties, used to read the etcd property source before the
+	 * application context exists. It neither updates the locations nor routes
+	 * to the leader nor caches, and it does not pool connections.
+	 * 
+	 * @param properties
+	 *            the properties
+	 * @param locations
+	 *            the locations
+	 * @return the etcd client
+	 */
+	static EtcdClient createBootstrapClient(EtcdClientProperties properties, String[] locations) {
+		EtcdClient client = new EtcdClient(locations);
+		client.setRetryCount(properties.getRetryCount());
+		client.setRetryDuration(properties.getRetryDuration());
+		client.setRetryPolicy(createRetryPolicy(properties));
+		client.setLocationUpdaterEnabled(false);
+		client.setLeaderRoutingEnabled(false);
+		setSimpleRequestFactories(client, properties);
+		return client;
+	}
+
+	/**
+	 * Sets request factories opening a new connection per request configured
+	 * by the given properties.
+	 * 
+	 * @param client
+	 *            the etcd client
+	 * @param properties
+	 *            the properties
+	 */
+	private static void setSimpleRequestFactories(EtcdClient client, EtcdClientProperties properties) {
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(properties.getConnectTimeout());
+		requestFactory.setReadTimeout(properties.getReadTimeout());
+		client.setRequestFactory(requestFactory);
+
+		SimpleClientHttpRequestFactory watchRequestFactory = new SimpleClientHttpRequestFactory();
+		watchRequestFactory.setConnectTimeout(properties.getConnectTimeout());
+		watchRequestFactory.setReadTimeout(properties.getWatchTimeout());
+		client.setWatchRequestFactory(watchRequestFactory);
+	}
+
+	/**
+	 * Creates the retry policy configured by the given properties.
+	 * 
+	 * @param properties
+	 *            the properties
+	 * @return the retry policy
+	 */
+	private static EtcdBackoffRetryPolicy createRetryPolicy(EtcdClientProperties properties) {
+		EtcdBackoffRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+		retryPolicy.setInitialDelay(properties.getRetryInitialDelay());
+		retryPolicy.setMaxDelay(properties.getRetryMaxDelay());
+		retryPolicy.setJitter(properties.isRetryJitter());
+		return retryPolicy;
+	}
+
+	/**
+	 * Creates the member selector configured by the given properties.
+	 * 
+	 * @param properties
+	 *            the properties
+	 * @return the member selector
+	 */
+	private static AbstractEtcdMemberSelector createMemberSelector(EtcdClientProperties properties) {
+		AbstractEtcdMemberSelector memberSelector;
+		switch (properties.getMemberSelection()) {
+		case "ewma":
+			memberSelector = new EtcdEwmaMemberSelector();
+			break;
+		case "round-robin":
+			memberSelector = new EtcdRoundRobinMemberSelector();
+			break;
+		case "power-of-two-choices":
+			memberSelector = new EtcdPowerOfTwoChoicesMemberSelector();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown member selection " + properties.getMemberSelection() + ".");
+		}
+		memberSelector.setFailureTimeout(properties.getMemberFailureTimeout());
+		memberSelector.setFailureThreshold(properties.getMemberFailureThreshold());
+		memberSelector.setSlowCallThreshold(properties.getMemberSlowCallThreshold());
+		memberSelector.setSlowCallDuration(properties.getMemberSlowCallDuration());
+		return memberSelector;
+	}
+
+	/**
+	 * Creates a pooling request factory configured by the given properties.
+	 * 
+	 * @param properties
+	 *            the properties
+	 * @param readTimeout
+	 *            the read timeout
+	 * @param maxConnectionsPerLocation
+	 *            the maximum number of connections per etcd cluster node
+	 * @param maxConnections
+	 *            the maximum number of connections to all etcd cluster nodes
+	 * @return the request factory
+	 */
+	private static EtcdPoolingRequestFactory createPoolingRequestFactory(EtcdClientProperties properties,
+			int readTimeout, int maxConnectionsPerLocation, int maxConnections) {
+		EtcdPoolingRequestFactory requestFactory = new EtcdPoolingRequestFactory();
+		requestFactory.setConnectTimeout(properties.getConnectTimeout());
+		requestFactory.setConnectionRequestTimeout(properties.getPool().getConnectionRequestTimeout());
+		requestFactory.setReadTimeout(readTimeout);
+		requestFactory.setMaxConnectionsPerLocation(maxConnectionsPerLocation);
+		requestFactory.setMaxConnections(maxConnections);
+		requestFactory.setKeepAlive(properties.getPool().getKeepAlive());
+		requestFactory.setIdleTimeout(properties.getPool().getIdleTimeout());
+		requestFactory.afterPropertiesSet();
+		return requestFactory;
+	}
+
 	@Configuration
 	@ConditionalOnProperty(prefix = "zalando.etcd", name = "location")
 	@EnableConfigurationProperties(EtcdClientProperties.class)
@@ -64,19 +245,13 @@ public class EtcdClientAutoConfiguration {
 		@Autowired
 		private EtcdClientProperties properties;
 
+		@Autowired(required = false)
+		private List<EtcdClientInterceptor> interceptors;
+
 		@Bean
 		public EtcdClient etcdClient() {
-			EtcdClient client = new EtcdClient(properties.getLocation());
-
-			client.setRetryCount(properties.getRetryCount());
-			client.setRetryDuration(properties.getRetryDuration());
-			client.setLocationUpdaterEnabled(properties.isUpdateLocations());
-
-			SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-			requestFactory.setConnectTimeout(properties.getConnectTimeout());
-			requestFactory.setReadTimeout(properties.getReadTimeout());
-			client.setRequestFactory(requestFactory);
-
+			EtcdClient client = createClient(properties, properties.getLocation());
+			client.setInterceptors(interceptors);
 			return client;
 		}
 	}
@@ -89,48 +264,21 @@ public class EtcdClientAutoConfiguration {
 		@Autowired
 		private EtcdClientProperties properties;
 
-		private List<String> discoverNodes(String serviceName) throws NamingException {
-			List<String> locations = new ArrayList<>();
-
-			Hashtable<String, String> env = new Hashtable<String, String>();
-			env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
-			env.put("java.naming.provider.url", "dns:");
-
-			DirContext context = new InitialDirContext(env);
-			Attributes attributes = context.getAttributes(serviceName, new String[] { "SRV" });
-			for (NamingEnumeration<? extends Attribute> records = attributes.getAll(); records.hasMore();) {
-				Attribute record = records.next();
-				NamingEnumeration<String> values = (NamingEnumeration<String>) record.getAll();
-				while (values.hasMore()) {
-					String dns = values.next();
-					String[] split = dns.split(" ");
-					String host = split[3];
-					if (host.endsWith(".")) {
-						host = host.substring(0, host.length() - 1);
-					}
-
-					String location = "http://" + host + ":2379";
-					locations.add(location);
-				}
-			}
-			return locations;
-		}
+		@Autowired(required = false)
+		private List<EtcdClientInterceptor> interceptors;
 
 		@Bean
-		public EtcdClient etcdClient() throws NamingException {
-			List<String> locations = discoverNodes("_etcd-server._tcp." + properties.getServiceName());
-
-			EtcdClient client = new EtcdClient(locations.get(0));
-
-			client.setRetryCount(properties.getRetryCount());
-			client.setRetryDuration(properties.getRetryDuration());
-			client.setLocationUpdaterEnabled(properties.isUpdateLocations());
-
-			SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-			requestFactory.setConnectTimeout(properties.getConnectTimeout());
-			requestFactory.setReadTimeout(properties.getReadTimeout());
-			client.setRequestFactory(requestFactory);
+		public EtcdSrvDiscovery etcdSrvDiscovery() {
+			EtcdSrvDiscovery discovery = new EtcdSrvDiscovery(properties.getServiceName());
+			discovery.setRefreshInterval(properties.getDnsRefreshInterval());
+			return discovery;
+		}
 
+		@Bean
+		public EtcdClient etcdClient(EtcdSrvDiscovery discovery) throws NamingException {
+			EtcdClient client = createClient(properties, discovery.getLocations());
+			client.setInterceptors(interceptors);
+			discovery.setClient(client);
 			return client;
 		}
 	}
@@ -38,6 +38,11 @@ public class EtcdClientProperties {
 	 * DNS SRV name used to lookup etcd nodes
 	 */
 	private String serviceName;
+
+	/**
+	 * interval in milliseconds between DNS SRV lookups of the etcd nodes
+	 */
+	private long dnsRefreshInterval = 60000;
 	
 	/**
 	 * location of etcd nodes
@@ -60,7 +65,13 @@ public class EtcdClientProperties {
 	private int readTimeout = 3000;
 
 	/**
-	 * number of retries the client should do before giving up
+	 * the read timeout for a watch request to the etcd cluster node
+	 */
+	private int watchTimeout = 60000;
+
+	/**
+	 * number of retries the client should do before giving up or 0 to retry
+	 * until the retry duration elapsed
 	 */
 	private int retryCount = 0;
 
@@ -68,10 +79,242 @@ public class EtcdClientProperties {
 	 * maximum duration the client should retry before giving up
 	 */
 	private int retryDuration = 0;
+
+	/**
+	 * delay in milliseconds before the first retry, growing exponentially
+	 * with every further retry
+	 */
+	private long retryInitialDelay = 50;
+
+	/**
+	 * maximum delay in milliseconds before a retry
+	 */
+	private long retryMaxDelay = 2000;
+
+	/**
+	 * indicates whether retry delays are chosen randomly up to the
+	 * exponential delay
+	 */
+	private boolean retryJitter = true;
+
+	/**
+	 * fraction of a retry every successful request adds to the retry budget
+	 */
+	private double retryBudgetRatio = 0.1;
+
+	/**
+	 * maximum number of retries in the retry budget, 0 for unlimited retries
+	 */
+	private int retryBudgetBurst = 10;
 	
 	/**
 	 * indicates whether location information should be updated using the members API
 	 */
 	private boolean updateLocations = true;
 
+	/**
+	 * minimum interval in milliseconds between location updates, used after
+	 * a change or a failure
+	 */
+	private long updateInterval = 5000;
+
+	/**
+	 * maximum interval in milliseconds between location updates while the
+	 * etcd cluster nodes are stable
+	 */
+	private long maxUpdateInterval = 300000;
+
+	/**
+	 * time in milliseconds all etcd cluster nodes are probed within when
+	 * updating the locations
+	 */
+	private long probeTimeout = 2000;
+
+	/**
+	 * indicates whether connections to all etcd cluster nodes should be
+	 * opened and measured on startup
+	 */
+	private boolean warmUp = false;
+
+	/**
+	 * time in milliseconds the warm-up on startup may take at most
+	 */
+	private long warmUpTimeout = 2000;
+
+	/**
+	 * indicates whether concurrent identical reads should share a single
+	 * request
+	 */
+	private boolean coalesceReads = true;
+
+	/**
+	 * maximum number of concurrent requests of a single batch read
+	 */
+	private int batchConcurrency = 8;
+
+	/**
+	 * strategy selecting the etcd cluster node a request is sent to, one of
+	 * <code>ewma</code>, <code>round-robin</code> and
+	 * <code>power-of-two-choices</code>
+	 */
+	private String memberSelection = "ewma";
+
+	/**
+	 * time in milliseconds an etcd cluster node is ejected after its circuit
+	 * breaker opened
+	 */
+	private long memberFailureTimeout = 5000;
+
+	/**
+	 * number of consecutive failures opening the circuit breaker of an etcd
+	 * cluster node
+	 */
+	private int memberFailureThreshold = 1;
+
+	/**
+	 * number of consecutive slow calls opening the circuit breaker of an etcd
+	 * cluster node, 0 to ignore slow calls
+	 */
+	private int memberSlowCallThreshold = 5;
+
+	/**
+	 * duration in milliseconds after which a call to an etcd cluster node is
+	 * considered slow
+	 */
+	private long memberSlowCallDuration = 1000;
+
+	/**
+	 * indicates whether mutating requests should be sent to the leader
+	 * directly
+	 */
+	private boolean leaderRouting = true;
+
+	/**
+	 * indicates whether slow reads should be sent to a second etcd cluster
+	 * node
+	 */
+	private boolean hedgeReads = false;
+
+	/**
+	 * delay in milliseconds before a read is sent to a second etcd cluster
+	 * node
+	 */
+	private long hedgeDelay = 50;
+
+	/**
+	 * percentile of the observed read latency used as hedge delay, 0 to
+	 * always use the fixed hedge delay
+	 */
+	private double hedgePercentile = 0.95;
+
+	/**
+	 * pooled keep-alive HTTP transport of the etcd client
+	 */
+	private Pool pool = new Pool();
+
+	/**
+	 * Configuration properties for the pooled HTTP transport.
+	 */
+	@Data
+	public static class Pool {
+
+		/**
+		 * indicates whether connections should be pooled, requires Apache
+		 * HttpClient
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * maximum number of connections per etcd cluster node
+		 */
+		private int maxConnectionsPerLocation = 20;
+
+		/**
+		 * maximum number of connections to all etcd cluster nodes
+		 */
+		private int maxConnections = 100;
+
+		/**
+		 * maximum number of long-polling watch connections per etcd cluster
+		 * node, pooled separately from the other requests
+		 */
+		private int maxWatchConnectionsPerLocation = 100;
+
+		/**
+		 * time in milliseconds a request waits for a pooled connection
+		 */
+		private int connectionRequestTimeout = 1000;
+
+		/**
+		 * maximum time in milliseconds an idle connection is kept alive
+		 */
+		private long keepAlive = 30000;
+
+		/**
+		 * time in milliseconds after which idle connections are evicted
+		 */
+		private long idleTimeout = 60000;
+
+		/**
+		 * number of connections opened to each etcd cluster node on startup
+		 */
+		private int warmUpConnections = 0;
+	}
+
+	/**
+	 * local read cache of the etcd client
+	 */
+	private Cache cache = new Cache();
+
+	/**
+	 * Configuration properties for the local read cache.
+	 */
+	@Data
+	public static class Cache {
+
+		/**
+		 * indicates whether reads should be served from a local cache
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * key of the root node whose descendants are cached and watched,
+		 * required if the cache is enabled; the whole subtree is read on
+		 * startup and whenever the watch has to recover
+		 */
+		private String root;
+
+		/**
+		 * maximum number of cached responses
+		 */
+		private int maximumSize = 10000;
+	}
+
+	/**
+	 * property source backed by etcd
+	 */
+	private Source propertySource = new Source();
+
+	/**
+	 * Configuration properties for the property source backed by etcd.
+	 */
+	@Data
+	public static class Source {
+
+		/**
+		 * indicates whether properties should be loaded from etcd
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * key of the node whose descendants are provided as properties
+		 */
+		private String prefix = "/config";
+
+		/**
+		 * indicates whether the startup should fail if properties cannot be
+		 * loaded from etcd
+		 */
+		private boolean failFast = true;
+	}
 }
@@ -0,0 +1,59 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd.autoconfigure;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.zalando.boot.etcd.EtcdClient;
+import org.zalando.boot.etcd.EtcdClusterStatus;
+
+/**
+ * Read-only endpoint exposing the routing table of the etcd client with the
+ * latency and error rate of every member and the result of the last
+ * membership update.
+ */
+@ConfigurationProperties(prefix = "endpoints.etcd")
+public class EtcdEndpoint extends AbstractEndpoint<EtcdClusterStatus> {
+
+	/**
+	 * etcd client
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * Creates a new EtcdEndpoint.
+	 * 
+	 * @param client
+	 *            the etcd client
+	 */
+	public EtcdEndpoint(EtcdClient client) {
+		super("etcd");
+		this.client = client;
+	}
+
+	@Override
+	public EtcdClusterStatus invoke() {
+		return client.getClusterStatus();
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd.autoconfigure;
+
+import java.util.Map;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.bind.PropertySourcesPropertyValues;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.boot.context.config.ConfigFileApplicationListener;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.StandardEnvironment;
+import org.zalando.boot.etcd.EtcdClient;
+import org.zalando.boot.etcd.EtcdException;
+import org.zalando.boot.etcd.EtcdMirror;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Adds a property source backed by a mirror of a prefix in etcd to the
+ * environment, if enabled by <code>zalando.etcd.property-source.enabled</code>.
+ * The prefix is read once on startup and kept current by a watch, so property
+ * lookups never touch the network.
+ * <p>
+ * The prefix is read with a minimal bootstrap client before the application
+ * context exists. Once the context is refreshed, the property source switches
+ * to the context's etcd client and the bootstrap client is shut down.
+ */
+@Slf4j
+public class EtcdEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered {
+
+	/**
+	 * name of the property source
+	 */
+	public static final String PROPERTY_SOURCE_NAME = "etcd";
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see Ordered#getOrder()
+	 */
+	@Override
+	public int getOrder() {
+		return ConfigFileApplicationListener.DEFAULT_ORDER + 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see EnvironmentPostProcessor#postProcessEnvironment(ConfigurableEnvironment,
+	 *      SpringApplication)
+	 */
+	@Override
+	public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+		EtcdClientProperties properties = new EtcdClientProperties();
+		new RelaxedDataBinder(properties, "zalando.etcd")
+				.bind(new PropertySourcesPropertyValues(environment.getPropertySources()));
+
+		if (!properties.isEnabled() || !properties.getPropertySource().isEnabled()) {
+			return;
+		}
+		if (properties.getLocation() == null || properties.getLocation().length == 0) {
+			log.warn("Not adding etcd property source because no location is configured.");
+			return;
+		}
+
+		EtcdClient client = EtcdClientAutoConfiguration.createBootstrapClient(properties, properties.getLocation());
+		EtcdMirror mirror = new EtcdMirror(client, properties.getPropertySource().getPrefix());
+		try {
+			client.afterPropertiesSet();
+			mirror.afterPropertiesSet();
+		} catch (Exception e) {
+			destroy(mirror, client);
+			if (properties.getPropertySource().isFailFast()) {
+				throw new IllegalStateException("Could not load properties from etcd.", e);
+			}
+			log.warn("Could not load properties from etcd.", e);
+			return;
+		}
+
+		EtcdPropertySource propertySource = new EtcdPropertySource(PROPERTY_SOURCE_NAME, mirror);
+		MutablePropertySources propertySources = environment.getPropertySources();
+		if (propertySources.contains(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME)) {
+			propertySources.addAfter(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME, propertySource);
+		} else {
+			propertySources.addLast(propertySource);
+		}
+
+		application.addListeners(new PropertySourceLifecycle(environment, client, mirror));
+	}
+
+	/**
+	 * Stops the given mirror and client.
+	 * 
+	 * @param mirror
+	 *            the mirror
+	 * @param client
+	 *            the client or <code>null</code>
+	 */
+	private static void destroy(EtcdMirror mirror, EtcdClient client) {
+		try {
+			mirror.destroy();
+			if (client != null) {
+				client.destroy();
+			}
+		} catch (Exception e) {
+			log.warn("Could not stop etcd property source.", e);
+		}
+	}
+
+	/**
+	 * Hands the property source over to the etcd client of the application
+	 * context once the context is refreshed, so the bootstrap client does not
+	 * live on next to it, and stops the mirror when the context is closed.
+	 */
+	private static class PropertySourceLifecycle implements ApplicationListener<ApplicationContextEvent> {
+
+		/**
+		 * environment containing the property source
+		 */
+		private final ConfigurableEnvironment environment;
+
+		/**
+		 * client the property source was loaded with, <code>null</code> once
+		 * it is shut down
+		 */
+		private EtcdClient bootstrapClient;
+
+		/**
+		 * mirror backing the property source
+		 */
+		private EtcdMirror mirror;
+
+		PropertySourceLifecycle(ConfigurableEnvironment environment, EtcdClient bootstrapClient, EtcdMirror mirror) {
+			this.environment = environment;
+			this.bootstrapClient = bootstrapClient;
+			this.mirror = mirror;
+		}
+
+		@Override
+		public synchronized void onApplicationEvent(ApplicationContextEvent event) {
+			ApplicationContext context = event.getApplicationContext();
+			if (context.getEnvironment() != environment) {
+				// events of child contexts are passed to the parent as well
+				return;
+			}
+
+			if (event instanceof ContextRefreshedEvent && bootstrapClient != null) {
+				handOver(context);
+			} else if (event instanceof ContextClosedEvent) {
+				destroy(mirror, bootstrapClient);
+				bootstrapClient = null;
+			}
+		}
+
+		/**
+		 * Replaces the property source with one backed by the etcd client of
+		 * the given context and shuts the bootstrap client down. The bootstrap
+		 * client is kept if the context has no single etcd client or the
+		 * prefix cannot be loaded with it.
+		 * 
+		 * @param context
+		 *            the refreshed context
+		 */
+		private void handOver(ApplicationContext context) {
+			Map<String, EtcdClient> clients = context.getBeansOfType(EtcdClient.class);
+			if (clients.size() != 1) {
+				return;
+			}
+
+			EtcdMirror contextMirror = new EtcdMirror(clients.values().iterator().next(), mirror.getPrefix());
+			try {
+				contextMirror.afterPropertiesSet();
+			} catch (EtcdException | RuntimeException e) {
+				contextMirror.destroy();
+				log.warn("Could not hand etcd property source over, keeping the bootstrap client.", e);
+				return;
+			}
+
+			environment.getPropertySources().replace(PROPERTY_SOURCE_NAME,
+					new EtcdPropertySource(PROPERTY_SOURCE_NAME, contextMirror));
+			destroy(mirror, bootstrapClient);
+			bootstrapClient = null;
+			mirror = contextMirror;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd.autoconfigure;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.zalando.boot.etcd.AbstractEtcdMemberSelector.State;
+import org.zalando.boot.etcd.EtcdClient;
+import org.zalando.boot.etcd.EtcdClusterStatus;
+import org.zalando.boot.etcd.EtcdMemberStatus;
+
+/**
+ * Health indicator of the etcd cluster. The health is derived from the
+ * cluster status the client already observed, i.e. the circuit breakers of
+ * the members and the probes of the last membership update, so checking the
+ * health does not send a request to etcd.
+ */
+public class EtcdHealthIndicator extends AbstractHealthIndicator {
+
+	/**
+	 * etcd client
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * Creates a new EtcdHealthIndicator.
+	 * 
+	 * @param client
+	 *            the etcd client
+	 */
+	public EtcdHealthIndicator(EtcdClient client) {
+		this.client = client;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) throws Exception {
+		EtcdClusterStatus status = client.getClusterStatus();
+
+		int available = 0;
+		for (EtcdMemberStatus member : status.getMembers()) {
+			if (isAvailable(member, status)) {
+				available++;
+			}
+		}
+
+		if (available > 0) {
+			builder.up();
+		} else {
+			builder.down();
+		}
+
+		builder.withDetail("members", status.getMembers().size()).withDetail("available", available);
+		if (status.getLeader() != null) {
+			builder.withDetail("leader", status.getLeader());
+		}
+		if (status.getLastUpdate() != null) {
+			builder.withDetail("lastUpdate", status.getLastUpdate());
+		}
+		if (status.getLastUpdateError() != null) {
+			builder.withDetail("lastUpdateError", status.getLastUpdateError());
+		}
+	}
+
+	/**
+	 * A member is available if its circuit breaker is closed and it answered
+	 * the probe of the last membership update, if any.
+	 */
+	private static boolean isAvailable(EtcdMemberStatus member, EtcdClusterStatus status) {
+		return member.getState() == State.CLOSED && (status.getLastUpdate() == null || member.getProbeLatency() != null);
+	}
+}
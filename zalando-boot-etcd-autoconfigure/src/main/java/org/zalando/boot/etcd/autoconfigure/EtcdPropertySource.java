@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd.autoconfigure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.core.env.EnumerablePropertySource;
+import org.zalando.boot.etcd.EtcdMirror;
+import org.zalando.boot.etcd.EtcdNode;
+
+/**
+ * A property source that serves the values of all nodes below the prefix of
+ * an etcd mirror. The path of a node relative to the prefix is mapped to the
+ * property name by replacing slashes with dots, so the node
+ * <code>/config/server/port</code> provides the property
+ * <code>server.port</code> for the prefix <code>/config</code>.
+ */
+public class EtcdPropertySource extends EnumerablePropertySource<EtcdMirror> {
+
+	/**
+	 * Creates a new EtcdPropertySource.
+	 * 
+	 * @param name
+	 *            the name of the property source
+	 * @param mirror
+	 *            the mirror providing the nodes
+	 */
+	public EtcdPropertySource(String name, EtcdMirror mirror) {
+		super(name, mirror);
+	}
+
+	@Override
+	public String[] getPropertyNames() {
+		String prefix = getSource().getPrefix();
+		int offset = "/".equals(prefix) ? 1 : prefix.length() + 1;
+
+		List<String> names = new ArrayList<>();
+		for (EtcdNode node : getSource().scan("/".equals(prefix) ? "/" : prefix + "/").values()) {
+			if (!node.isDir()) {
+				names.add(node.getKey().substring(offset).replace('/', '.'));
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public Object getProperty(String name) {
+		String prefix = getSource().getPrefix();
+		String path = "/".equals(prefix) ? "" : prefix;
+
+		String value = getSource().getValue(path + "/" + name.replace('.', '/'));
+		if (value == null && name.indexOf('.') >= 0) {
+			value = getSource().getValue(path + "/" + name);
+		}
+		return value;
+	}
+}
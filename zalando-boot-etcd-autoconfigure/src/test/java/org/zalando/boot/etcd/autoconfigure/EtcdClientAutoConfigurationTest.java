@@ -28,8 +28,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.zalando.boot.etcd.CachingEtcdClient;
 import org.zalando.boot.etcd.EtcdClient;
+import org.zalando.boot.etcd.EtcdEwmaMemberSelector;
+import org.zalando.boot.etcd.EtcdPoolingRequestFactory;
+import org.zalando.boot.etcd.EtcdPrefixWatcher;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest()
@@ -38,11 +43,55 @@ public class EtcdClientAutoConfigurationTest {
 	@Autowired
 	private EtcdClient client;
 
+	@Autowired
+	private EtcdPrefixWatcher watcher;
+
 	@Test
 	public void testStartup() {
 		Assert.assertNotNull(client);
 		Assert.assertEquals("retry-count", 3, client.getRetryCount());
 		Assert.assertEquals("retry-duration", 30000, client.getRetryDuration());
 		Assert.assertArrayEquals("locations", new String[] { "http://localhost:2379" }, client.getLocations());
+		Assert.assertNotNull("watcher", watcher);
+		Assert.assertTrue("request factory", client.getRequestFactory() instanceof SimpleClientHttpRequestFactory);
+		Assert.assertTrue("member selector", client.getMemberSelector() instanceof EtcdEwmaMemberSelector);
+	}
+
+	@Test
+	public void testCreateClientWithPool() throws Exception {
+		EtcdClientProperties properties = new EtcdClientProperties();
+		properties.setUpdateLocations(false);
+		properties.getPool().setEnabled(true);
+		properties.getPool().setMaxConnectionsPerLocation(5);
+
+		EtcdClient client = EtcdClientAutoConfiguration.createClient(properties,
+				new String[] { "http://localhost:2379" });
+		try {
+			Assert.assertTrue("request factory", client.getRequestFactory() instanceof EtcdPoolingRequestFactory);
+			Assert.assertEquals("max connections per location", 5,
+					((EtcdPoolingRequestFactory) client.getRequestFactory()).getMaxConnectionsPerLocation());
+			Assert.assertTrue("watch request factory",
+					client.getWatchRequestFactory() instanceof EtcdPoolingRequestFactory);
+			Assert.assertEquals("max watch connections per location", 100,
+					((EtcdPoolingRequestFactory) client.getWatchRequestFactory()).getMaxConnectionsPerLocation());
+			Assert.assertEquals("connection request timeout", 1000,
+					((EtcdPoolingRequestFactory) client.getRequestFactory()).getConnectionRequestTimeout());
+		} finally {
+			client.destroy();
+		}
+	}
+
+	@Test
+	public void testCreateBootstrapClient() throws Exception {
+		EtcdClientProperties properties = new EtcdClientProperties();
+		properties.getCache().setEnabled(true);
+		properties.getPool().setEnabled(true);
+
+		EtcdClient client = EtcdClientAutoConfiguration.createBootstrapClient(properties,
+				new String[] { "http://localhost:2379" });
+		Assert.assertFalse("cache", client instanceof CachingEtcdClient);
+		Assert.assertFalse("location updater", client.isLocationUpdaterEnabled());
+		Assert.assertFalse("leader routing", client.isLeaderRoutingEnabled());
+		Assert.assertTrue("request factory", client.getRequestFactory() instanceof SimpleClientHttpRequestFactory);
 	}
 }
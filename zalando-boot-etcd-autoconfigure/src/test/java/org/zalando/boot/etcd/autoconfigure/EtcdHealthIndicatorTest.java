@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd.autoconfigure;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.zalando.boot.etcd.AbstractEtcdMemberSelector.State;
+import org.zalando.boot.etcd.EtcdClient;
+import org.zalando.boot.etcd.EtcdClusterStatus;
+import org.zalando.boot.etcd.EtcdMemberStatus;
+
+public class EtcdHealthIndicatorTest {
+
+	/**
+	 * client
+	 */
+	private EtcdClient client = Mockito.mock(EtcdClient.class);
+
+	/**
+	 * health indicator
+	 */
+	private EtcdHealthIndicator healthIndicator = new EtcdHealthIndicator(client);
+
+	@Test
+	public void upIfMemberAnsweredProbe() {
+		Mockito.when(client.getClusterStatus()).thenReturn(new EtcdClusterStatus(
+				Arrays.asList(new EtcdMemberStatus("http://localhost:2379", true, State.CLOSED, 1.5, 0.0, 10, 0, 1.0),
+						new EtcdMemberStatus("http://localhost:2380", false, State.OPEN, 2.0, 1.0, 10, 5, null)),
+				"http://localhost:2379", new Date(), 3, null, 5000));
+
+		Health health = healthIndicator.health();
+		Assert.assertEquals("status", Status.UP, health.getStatus());
+		Assert.assertEquals("available", 1, health.getDetails().get("available"));
+		Assert.assertEquals("leader", "http://localhost:2379", health.getDetails().get("leader"));
+
+		Mockito.verify(client, Mockito.only()).getClusterStatus();
+	}
+
+	@Test
+	public void downIfNoMemberAnsweredProbe() {
+		Mockito.when(client.getClusterStatus()).thenReturn(new EtcdClusterStatus(
+				Arrays.asList(new EtcdMemberStatus("http://localhost:2379", false, State.CLOSED, 1.5, 0.5, 10, 1, null)),
+				null, new Date(), 2000, "java.io.IOException: connection refused", 5000));
+
+		Health health = healthIndicator.health();
+		Assert.assertEquals("status", Status.DOWN, health.getStatus());
+		Assert.assertEquals("available", 0, health.getDetails().get("available"));
+		Assert.assertEquals("last update error", "java.io.IOException: connection refused",
+				health.getDetails().get("lastUpdateError"));
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd.autoconfigure;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.zalando.boot.etcd.EtcdMirror;
+import org.zalando.boot.etcd.EtcdNode;
+
+public class EtcdPropertySourceTest {
+
+	/**
+	 * mirror
+	 */
+	private EtcdMirror mirror = Mockito.mock(EtcdMirror.class);
+
+	/**
+	 * property source
+	 */
+	private EtcdPropertySource propertySource = new EtcdPropertySource("etcd", mirror);
+
+	@Before
+	public void before() {
+		SortedMap<String, EtcdNode> nodes = new TreeMap<>();
+		nodes.put("/config/server", new EtcdNode("/config/server", null, null, true, 2, 2, null, null));
+		nodes.put("/config/server/port", new EtcdNode("/config/server/port", "8080", null, false, 3, 3, null, null));
+		nodes.put("/config/feature.flag", new EtcdNode("/config/feature.flag", "true", null, false, 4, 4, null, null));
+
+		Mockito.when(mirror.getPrefix()).thenReturn("/config");
+		Mockito.when(mirror.scan("/config/")).thenReturn(nodes);
+		Mockito.when(mirror.getValue("/config/server/port")).thenReturn("8080");
+		Mockito.when(mirror.getValue("/config/feature.flag")).thenReturn("true");
+	}
+
+	@Test
+	public void getPropertyNames() {
+		Assert.assertArrayEquals("names", new String[] { "feature.flag", "server.port" },
+				propertySource.getPropertyNames());
+	}
+
+	@Test
+	public void getProperty() {
+		Assert.assertEquals("nested key", "8080", propertySource.getProperty("server.port"));
+		Assert.assertEquals("key with dot", "true", propertySource.getProperty("feature.flag"));
+		Assert.assertNull("missing key", propertySource.getProperty("server.address"));
+	}
+}
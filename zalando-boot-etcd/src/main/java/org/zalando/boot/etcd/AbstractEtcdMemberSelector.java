@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Base class of member selectors keeping an exponentially weighted moving
+ * average of the latency and a circuit breaker for every member.
+ * <p>
+ * The circuit breaker of a member opens after a number of consecutive
+ * failures or slow calls, ejecting the member from the selection for the
+ * {@link #getFailureTimeout() failure timeout}. Afterwards, a single request
+ * is let through as probe while the breaker is half-open. The breaker closes
+ * if the probe succeeds and opens again otherwise.
+ * <p>
+ * The statistics are updated with atomic operations only, so threads never
+ * block each other.
+ */
+public abstract class AbstractEtcdMemberSelector implements EtcdMemberSelector {
+
+	/**
+	 * time in milliseconds a member is ejected after its circuit breaker
+	 * opened
+	 */
+	@Getter
+	@Setter
+	private long failureTimeout = 5000;
+
+	/**
+	 * number of consecutive failures opening the circuit breaker of a member
+	 */
+	@Getter
+	@Setter
+	private int failureThreshold = 1;
+
+	/**
+	 * number of consecutive slow calls opening the circuit breaker of a
+	 * member, <code>0</code> to ignore slow calls
+	 */
+	@Getter
+	@Setter
+	private int slowCallThreshold = 5;
+
+	/**
+	 * duration in milliseconds after which a call is considered slow
+	 */
+	@Getter
+	@Setter
+	private long slowCallDuration = 1000;
+
+	/**
+	 * weight of a new latency sample in the moving average, between
+	 * <code>0</code> and <code>1</code>
+	 */
+	@Getter
+	@Setter
+	private double smoothing = 0.3;
+
+	/**
+	 * State of the circuit breaker of a member.
+	 */
+	public enum State {
+
+		/**
+		 * the member is selected
+		 */
+		CLOSED,
+
+		/**
+		 * the member is ejected
+		 */
+		OPEN,
+
+		/**
+		 * a single probe request was sent to the ejected member
+		 */
+		HALF_OPEN
+	}
+
+	@Override
+	public int select(EtcdMemberState[] members, int excluded) {
+		if (excluded < 0) {
+			long now = System.nanoTime();
+			for (int i = 0; i < members.length; i++) {
+				if (tryProbe(members[i], now)) {
+					return i;
+				}
+			}
+		}
+
+		int selected = selectHealthy(members, excluded);
+		if (selected >= 0 || excluded >= 0) {
+			return selected;
+		}
+		return leastRecentlyEjected(members);
+	}
+
+	/**
+	 * Selects one of the given members whose circuit breaker is closed.
+	 * 
+	 * @param members
+	 *            the members
+	 * @param excluded
+	 *            the index of the member that must not be selected or
+	 *            <code>-1</code>
+	 * @return the index of the selected member or <code>-1</code> if no
+	 *         member is available
+	 */
+	protected abstract int selectHealthy(EtcdMemberState[] members, int excluded);
+
+	@Override
+	public void success(EtcdMemberState member, long latency) {
+		member.update(latency, smoothing);
+
+		if (slowCallThreshold > 0 && latency > TimeUnit.MILLISECONDS.toNanos(slowCallDuration)) {
+			if (member.slowCalls.incrementAndGet() >= slowCallThreshold || member.probing) {
+				eject(member);
+				return;
+			}
+		} else {
+			member.slowCalls.set(0);
+		}
+
+		member.failures.set(0);
+		member.probing = false;
+		member.ejectedUntil.set(EtcdMemberState.CLOSED);
+	}
+
+	@Override
+	public void failure(EtcdMemberState member) {
+		if (member.failures.incrementAndGet() >= failureThreshold || member.probing) {
+			eject(member);
+		}
+	}
+
+	/**
+	 * Returns the state of the circuit breaker of the given member.
+	 * 
+	 * @param member
+	 *            the state of the member
+	 * @return the state of the circuit breaker
+	 */
+	public static State getState(EtcdMemberState member) {
+		if (member.isHealthy()) {
+			return State.CLOSED;
+		}
+		return member.probing ? State.HALF_OPEN : State.OPEN;
+	}
+
+	/**
+	 * Checks whether the given member can be selected.
+	 * 
+	 * @param members
+	 *            the members
+	 * @param member
+	 *            the index of the member
+	 * @param excluded
+	 *            the index of the member that must not be selected or
+	 *            <code>-1</code>
+	 * @return <code>true</code> if the circuit breaker of the member is closed
+	 *         and the member is not excluded, <code>false</code> otherwise
+	 */
+	protected static boolean isHealthy(EtcdMemberState[] members, int member, int excluded) {
+		return member != excluded && members[member].isHealthy();
+	}
+
+	/**
+	 * Opens the circuit breaker of the given member.
+	 */
+	private void eject(EtcdMemberState member) {
+		member.failures.set(0);
+		member.slowCalls.set(0);
+		member.probing = false;
+		member.ejectedUntil.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(failureTimeout));
+	}
+
+	/**
+	 * Lets the caller probe the given member if its ejection expired. Only a
+	 * single caller succeeds until the ejection expires again.
+	 */
+	private boolean tryProbe(EtcdMemberState member, long now) {
+		long ejectedUntil = member.ejectedUntil.get();
+		if (ejectedUntil != EtcdMemberState.CLOSED && now - ejectedUntil >= 0 && member.ejectedUntil
+				.compareAndSet(ejectedUntil, now + TimeUnit.MILLISECONDS.toNanos(failureTimeout))) {
+			member.probing = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the member whose ejection expires first, used if no member is
+	 * available.
+	 */
+	private static int leastRecentlyEjected(EtcdMemberState[] members) {
+		int selected = 0;
+		for (int i = 1; i < members.length; i++) {
+			if (members[i].ejectedUntil.get() - members[selected].ejectedUntil.get() < 0) {
+				selected = i;
+			}
+		}
+		return selected;
+	}
+}
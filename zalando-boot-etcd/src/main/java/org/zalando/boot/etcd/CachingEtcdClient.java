@@ -0,0 +1,721 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * An etcd client that serves reads of nodes below a root node from a local
+ * cache. Cached nodes are invalidated by a recursive watch of the root node
+ * and by modifications issued through this client. The cache holds at most
+ * the configured number of responses, evicting the oldest ones first, and
+ * honours the expiration of nodes with a time-to-live.
+ * <p>
+ * Nothing is cached until a cache root is set. The watch reads the whole
+ * subtree below the cache root when it starts and again whenever etcd no
+ * longer holds the watched index, so the root should be the smallest subtree
+ * covering the cached keys. A root of <code>/</code> reads the whole keyspace.
+ * <p>
+ * Cached responses are shared between callers and must not be modified.
+ */
+public class CachingEtcdClient extends EtcdClient {
+
+	/**
+	 * key of the root node whose descendants are cached or <code>null</code>
+	 * if nothing is cached
+	 */
+	@Getter
+	private String cacheRoot;
+
+	/**
+	 * maximum number of cached responses
+	 */
+	@Getter
+	@Setter
+	private int maximumSize = 10000;
+
+	/**
+	 * cached non-recursive responses by normalized key
+	 */
+	private final ConcurrentNavigableMap<String, Entry> nodes = new ConcurrentSkipListMap<>();
+
+	/**
+	 * cached recursive responses by normalized key
+	 */
+	private final ConcurrentNavigableMap<String, Entry> trees = new ConcurrentSkipListMap<>();
+
+	/**
+	 * cached entries in insertion order, also used to guard modifications
+	 */
+	private final Set<Entry> order = new LinkedHashSet<>();
+
+	/**
+	 * etcd index of the latest change of each normalized key, in the order the
+	 * changes were applied, guarded by the order
+	 */
+	private final Map<String, Long> keyChanges = new LinkedHashMap<>();
+
+	/**
+	 * etcd index of the latest change below each normalized key, in the order
+	 * the changes were applied, guarded by the order
+	 */
+	private final Map<String, Long> treeChanges = new LinkedHashMap<>();
+
+	/**
+	 * highest etcd index of the changes that are no longer tracked per key,
+	 * guarded by the order
+	 */
+	private long forgottenIndex;
+
+	/**
+	 * highest etcd index the cache has applied or read, guarded by the order
+	 */
+	private long appliedIndex;
+
+	/**
+	 * number of reads served from the cache
+	 */
+	private final LongAdder hits = new LongAdder();
+
+	/**
+	 * number of reads that were not served from the cache
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * number of evicted or expired responses
+	 */
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * watch of the root node
+	 */
+	private EtcdWatch watch;
+
+	/**
+	 * Creates a new CachingEtcdClient.
+	 */
+	public CachingEtcdClient() {
+		super();
+	}
+
+	/**
+	 * Creates a new CachingEtcdClient with the given location.
+	 * 
+	 * @param location
+	 *            the location
+	 */
+	public CachingEtcdClient(String location) {
+		super(location);
+	}
+
+	/**
+	 * Creates a new CachingEtcdClient with the given locations.
+	 * 
+	 * @param locations
+	 *            the locations
+	 */
+	public CachingEtcdClient(String[] locations) {
+		super(locations);
+	}
+
+	/**
+	 * @param value
+	 *            the key of the root node whose descendants are cached or
+	 *            <code>null</code> to cache nothing
+	 */
+	public void setCacheRoot(String value) {
+		this.cacheRoot = value == null ? null : EtcdKeys.normalize(value);
+	}
+
+	/**
+	 * @return the number of reads served from the cache
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of reads of cacheable nodes that were not served from
+	 *         the cache
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of responses removed from the cache because of its
+	 *         size or their expiration
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the number of cached responses
+	 */
+	public int getSize() {
+		synchronized (order) {
+			return order.size();
+		}
+	}
+
+	@Override
+	public EtcdResponse get(String key) throws EtcdException {
+		EtcdResponse response = lookup(key, false);
+		if (response == null) {
+			response = super.get(key);
+			store(key, false, response);
+		}
+		return response;
+	}
+
+	@Override
+	public EtcdResponse get(String key, boolean recursive) throws EtcdException {
+		EtcdResponse response = lookup(key, recursive);
+		if (response == null) {
+			response = super.get(key, recursive);
+			store(key, recursive, response);
+		}
+		return response;
+	}
+
+	@Override
+	public EtcdResponse put(String key, String value) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.put(key, value);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse put(String key, String value, int ttl) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.put(key, value, ttl);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse delete(String key) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.delete(key);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse create(String key, String value) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.create(key, value);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndSwap(String key, String value, boolean prevExist) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndSwap(key, value, prevExist);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndSwap(String key, String value, int ttl, boolean prevExist)
+			throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndSwap(key, value, ttl, prevExist);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndSwap(String key, String value, int prevIndex) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndSwap(key, value, prevIndex);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndSwap(String key, String value, int ttl, int prevIndex) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndSwap(key, value, ttl, prevIndex);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndSwap(String key, String value, String prevValue) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndSwap(key, value, prevValue);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndSwap(String key, String value, int ttl, String prevValue) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndSwap(key, value, ttl, prevValue);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndDelete(String key, int prevIndex) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndDelete(key, prevIndex);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse compareAndDelete(String key, String prevValue) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.compareAndDelete(key, prevValue);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse putDir(String key) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.putDir(key);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse putDir(String key, int ttl) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.putDir(key, ttl);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse deleteDir(String key) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.deleteDir(key);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	@Override
+	public EtcdResponse deleteDir(String key, boolean recursive) throws EtcdException {
+		EtcdResponse response = null;
+		try {
+			response = super.deleteDir(key, recursive);
+			return response;
+		} finally {
+			invalidate(key, changeIndex(response));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see EtcdClient#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		super.afterPropertiesSet();
+		if (cacheRoot == null) {
+			return;
+		}
+
+		watch = watch(cacheRoot.substring(1), true, new EtcdListener() {
+
+			@Override
+			public void onChange(EtcdResponse response) {
+				if (response.getNode() != null && response.getNode().getKey() != null) {
+					invalidate(response.getNode().getKey(), changeIndex(response));
+				} else {
+					invalidateAll();
+				}
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see EtcdClient#destroy()
+	 */
+	@Override
+	public void destroy() throws Exception {
+		if (watch != null) {
+			watch.cancel();
+		}
+		super.destroy();
+	}
+
+	/**
+	 * Removes the cached responses affected by a change of the node with the
+	 * given key at an unknown etcd index.
+	 * 
+	 * @param key
+	 *            the key of the changed node
+	 */
+	void invalidate(String key) {
+		invalidate(key, -1);
+	}
+
+	/**
+	 * Removes the cached responses affected by a change of the node with the
+	 * given key: the node itself, its descendants, the listing of its parent
+	 * and the recursive listings of all its ancestors. Responses of these
+	 * nodes read before the change are not cached afterwards.
+	 * 
+	 * @param key
+	 *            the key of the changed node
+	 * @param index
+	 *            the etcd index of the change or <code>-1</code> if unknown
+	 */
+	void invalidate(String key, long index) {
+		String normalized = EtcdKeys.normalize(key);
+		if ("/".equals(normalized)) {
+			invalidateAll();
+			return;
+		}
+
+		synchronized (order) {
+			// without the index of the change, responses older than the latest known index are not cached
+			long changeIndex = index < 0 ? appliedIndex : index;
+			appliedIndex = Math.max(appliedIndex, changeIndex);
+			track(keyChanges, normalized, changeIndex);
+			for (String ancestor = EtcdKeys.parent(normalized); ancestor != null; ancestor = EtcdKeys
+					.parent(ancestor)) {
+				track(treeChanges, ancestor, changeIndex);
+			}
+			advanceReadGeneration();
+
+			remove(nodes, normalized);
+			remove(trees, normalized);
+			for (Entry entry : nodes.subMap(normalized + "/", normalized + "0").values()) {
+				remove(nodes, entry.key);
+			}
+			for (Entry entry : trees.subMap(normalized + "/", normalized + "0").values()) {
+				remove(trees, entry.key);
+			}
+
+			String parent = EtcdKeys.parent(normalized);
+			remove(nodes, parent);
+			for (String ancestor = parent; ancestor != null; ancestor = EtcdKeys.parent(ancestor)) {
+				remove(trees, ancestor);
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached responses.
+	 */
+	void invalidateAll() {
+		synchronized (order) {
+			forgottenIndex = appliedIndex;
+			keyChanges.clear();
+			treeChanges.clear();
+			advanceReadGeneration();
+
+			nodes.clear();
+			trees.clear();
+			order.clear();
+		}
+	}
+
+	/**
+	 * Returns the cached response for the given key.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param recursive
+	 *            <code>true</code> for the recursive response,
+	 *            <code>false</code> otherwise
+	 * @return the cached response or <code>null</code> if the node is not
+	 *         cached
+	 */
+	private EtcdResponse lookup(String key, boolean recursive) {
+		String normalized = EtcdKeys.normalize(key);
+		if (!isCacheable(normalized)) {
+			return null;
+		}
+
+		if (watch != null && watch.isFailing()) {
+			invalidateAll();
+			misses.increment();
+			return null;
+		}
+
+		ConcurrentNavigableMap<String, Entry> entries = recursive ? trees : nodes;
+		Entry entry = entries.get(normalized);
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+
+		if (entry.expiresAt <= System.currentTimeMillis()) {
+			synchronized (order) {
+				if (entries.remove(normalized, entry)) {
+					order.remove(entry);
+					evictions.increment();
+				}
+			}
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return entry.response;
+	}
+
+	/**
+	 * Caches the given response unless it is older than a change of the node,
+	 * one of its ancestors or one of its descendants, e.g. because it was read
+	 * from a member lagging behind the watch.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param recursive
+	 *            <code>true</code> for a recursive response,
+	 *            <code>false</code> otherwise
+	 * @param response
+	 *            the response
+	 */
+	private void store(String key, boolean recursive, EtcdResponse response) {
+		String normalized = EtcdKeys.normalize(key);
+		if (response == null || !isCacheable(normalized) || (watch != null && watch.isFailing())) {
+			return;
+		}
+
+		ConcurrentNavigableMap<String, Entry> entries = recursive ? trees : nodes;
+		Entry entry = new Entry(normalized, recursive, response, expiresAt(response.getNode()));
+
+		synchronized (order) {
+			long index = response.getEtcdIndex();
+			appliedIndex = Math.max(appliedIndex, index);
+			if (isChangedAfter(normalized, index)) {
+				return;
+			}
+
+			Entry previous = entries.put(normalized, entry);
+			if (previous != null) {
+				order.remove(previous);
+			}
+			order.add(entry);
+
+			while (order.size() > maximumSize) {
+				Iterator<Entry> iterator = order.iterator();
+				Entry eldest = iterator.next();
+				iterator.remove();
+				(eldest.recursive ? trees : nodes).remove(eldest.key, eldest);
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the node with the given normalized key, one of its
+	 * ancestors or one of its descendants changed after the given etcd index.
+	 * Needs to be called while holding the lock on the order.
+	 */
+	private boolean isChangedAfter(String key, long index) {
+		if (index < forgottenIndex) {
+			return true;
+		}
+
+		Long changeIndex = treeChanges.get(key);
+		if (changeIndex != null && changeIndex > index) {
+			return true;
+		}
+		for (String node = key; node != null; node = EtcdKeys.parent(node)) {
+			changeIndex = keyChanges.get(node);
+			if (changeIndex != null && changeIndex > index) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tracks a change of the given normalized key at the given etcd index in
+	 * the given changes. The oldest changes are forgotten beyond the maximum
+	 * size, so responses older than them are no longer cached. Needs to be
+	 * called while holding the lock on the order.
+	 */
+	private void track(Map<String, Long> changes, String key, long index) {
+		Long previous = changes.remove(key);
+		changes.put(key, previous == null ? index : Math.max(previous, index));
+
+		while (changes.size() > maximumSize) {
+			Iterator<Long> iterator = changes.values().iterator();
+			forgottenIndex = Math.max(forgottenIndex, iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Returns the etcd index of the change described by the given response.
+	 * 
+	 * @param response
+	 *            the response of a modification or watch or <code>null</code>
+	 * @return the etcd index or <code>-1</code> if unknown
+	 */
+	private static long changeIndex(EtcdResponse response) {
+		if (response == null) {
+			return -1;
+		}
+		if (response.getNode() != null && response.getNode().getModifiedIndex() > 0) {
+			return response.getNode().getModifiedIndex();
+		}
+		return response.getEtcdIndex() > 0 ? response.getEtcdIndex() : -1;
+	}
+
+	/**
+	 * Removes the cached response with the given key from the given map.
+	 * Needs to be called while holding the lock on the order.
+	 */
+	private void remove(ConcurrentNavigableMap<String, Entry> entries, String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			order.remove(entry);
+		}
+	}
+
+	/**
+	 * Checks whether the node with the given normalized key is below the cache
+	 * root.
+	 */
+	private boolean isCacheable(String key) {
+		String cacheRoot = this.cacheRoot;
+		return cacheRoot != null && (key.equals(cacheRoot) || EtcdKeys.isAncestor(cacheRoot, key));
+	}
+
+	/**
+	 * Returns the earliest expiration of the given node and its children.
+	 */
+	private static long expiresAt(EtcdNode node) {
+		if (node == null) {
+			return Long.MAX_VALUE;
+		}
+
+		long expiresAt = node.getExpiration() != null ? node.getExpiration().getTime() : Long.MAX_VALUE;
+		if (node.getNodes() != null) {
+			for (EtcdNode child : node.getNodes()) {
+				expiresAt = Math.min(expiresAt, expiresAt(child));
+			}
+		}
+		return expiresAt;
+	}
+
+	/**
+	 * A cached response.
+	 */
+	private static final class Entry {
+
+		/**
+		 * normalized key
+		 */
+		private final String key;
+
+		/**
+		 * indicates whether the response is recursive
+		 */
+		private final boolean recursive;
+
+		/**
+		 * response
+		 */
+		private final EtcdResponse response;
+
+		/**
+		 * time in milliseconds when the response expires
+		 */
+		private final long expiresAt;
+
+		/**
+		 * Creates a new Entry.
+		 */
+		private Entry(String key, boolean recursive, EtcdResponse response, long expiresAt) {
+			this.key = key;
+			this.recursive = recursive;
+			this.response = response;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
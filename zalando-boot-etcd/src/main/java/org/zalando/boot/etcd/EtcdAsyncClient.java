@@ -0,0 +1,859 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.zalando.boot.etcd.EtcdClientMetrics.Outcome;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A non-blocking service that encapsulates the communication with an etcd
+ * cluster. It provides the operations of {@link EtcdClient} returning
+ * {@link CompletableFuture}s instead of blocking the caller. Requests are
+ * routed, reported to the member selector, metrics and interceptors and
+ * retried on another member like in {@link EtcdClient}, after the delay of the
+ * retry policy, without blocking a thread while waiting.
+ * <p>
+ * If Apache HttpAsyncClient is on the class path, requests are executed by
+ * its event loop, so a few threads serve any number of requests in flight.
+ * Otherwise each request occupies one of at most
+ * {@link #getMaxConnectionsPerLocation()} threads while it is in flight.
+ * 
+ * @see <a href="https://coreos.com/etcd/docs/2.1.0/api.html">https://coreos.com
+ *      /etcd/docs/2.1.0/api.html</a>
+ */
+@Slf4j
+public class EtcdAsyncClient implements InitializingBean, DisposableBean {
+
+	/**
+	 * indicates whether Apache HttpAsyncClient is available
+	 */
+	private static final boolean HTTP_ASYNC_CLIENT_PRESENT = ClassUtils.isPresent(
+			"org.apache.http.impl.nio.client.CloseableHttpAsyncClient", EtcdAsyncClient.class.getClassLoader());
+
+	/**
+	 * request factory
+	 */
+	@Getter
+	@Setter
+	private AsyncClientHttpRequestFactory requestFactory;
+
+	/**
+	 * indicates whether the request factory was created by this client
+	 */
+	private boolean requestFactoryCreated = false;
+
+	/**
+	 * executor of the request factory if it was created by this client and
+	 * needs threads to execute requests
+	 */
+	private ExecutorService requestExecutor;
+
+	/**
+	 * template.
+	 */
+	private AsyncRestTemplate template;
+
+	/**
+	 * maximum number of retries of a request or <code>0</code> to retry until
+	 * the retry duration elapsed
+	 */
+	@Getter
+	@Setter
+	private int retryCount = 0;
+
+	/**
+	 * maximum duration of retries in milliseconds
+	 */
+	@Getter
+	@Setter
+	private int retryDuration = 0;
+
+	/**
+	 * policy deciding the delay before a retry
+	 */
+	@Getter
+	@Setter
+	private EtcdRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+
+	/**
+	 * budget limiting the retries to a fraction of the successful requests or
+	 * <code>null</code> for unlimited retries
+	 */
+	@Getter
+	@Setter
+	private EtcdRetryBudget retryBudget = new EtcdRetryBudget(0.1, 10);
+
+	/**
+	 * maximum number of concurrent connections per location
+	 */
+	@Getter
+	@Setter
+	private int maxConnectionsPerLocation = 100;
+
+	/**
+	 * client whose members, member selector, leader, metrics and interceptors
+	 * are used
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * indicates whether the client was created by this client
+	 */
+	private final boolean clientCreated;
+
+	/**
+	 * executor delaying retries without blocking a thread per request
+	 */
+	private ScheduledExecutorService retryScheduler = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "etcd-async-retry");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	/**
+	 * Creates a new EtcdAsyncClient.
+	 */
+	public EtcdAsyncClient() {
+		this(new String[0]);
+	}
+
+	/**
+	 * Creates a new EtcdAsyncClient with the given location.
+	 * 
+	 * @param location
+	 *            the location
+	 */
+	public EtcdAsyncClient(String location) {
+		this(new String[] { location });
+	}
+
+	/**
+	 * Creates a new EtcdAsyncClient with the given locations. Requests are
+	 * routed by the member selector of an internal {@link EtcdClient} that
+	 * neither updates the locations nor routes writes to the leader.
+	 * 
+	 * @param locations
+	 *            the locations
+	 */
+	public EtcdAsyncClient(String[] locations) {
+		this.client = new EtcdClient(locations);
+		this.client.setLocationUpdaterEnabled(false);
+		this.client.setLeaderRoutingEnabled(false);
+		this.clientCreated = true;
+	}
+
+	/**
+	 * Creates a new EtcdAsyncClient sharing the members, member selector,
+	 * leader, metrics and interceptors of the given client, including all
+	 * updates of the members by the client.
+	 * 
+	 * @param client
+	 *            the client
+	 */
+	public EtcdAsyncClient(EtcdClient client) {
+		this.client = client;
+		this.clientCreated = false;
+		this.retryCount = client.getRetryCount();
+		this.retryDuration = client.getRetryDuration();
+		this.retryPolicy = client.getRetryPolicy();
+		this.retryBudget = client.getRetryBudget();
+	}
+
+	/**
+	 * Sets the locations of the client whose members are used.
+	 * 
+	 * @param value
+	 *            the locations
+	 */
+	public void setLocations(String[] value) {
+		client.setLocations(value);
+	}
+
+	/**
+	 * @return the locations
+	 */
+	public String[] getLocations() {
+		return client.getLocations();
+	}
+
+	/**
+	 * Returns the node with the given key from etcd.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> get(String key) {
+		StringBuilder target = EtcdUris.keys(key);
+
+		return execute("get", key, target.toString(), HttpMethod.GET, null, client.getResponseExtractor());
+	}
+
+	/**
+	 * Returns the node with the given key from etcd.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param recursive
+	 *            <code>true</code> if child nodes should be returned,
+	 *            <code>false</code> otherwise
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> get(String key, boolean recursive) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "recursive", recursive);
+
+		return execute("get", key, target.toString(), HttpMethod.GET, null, client.getResponseExtractor());
+	}
+
+	/**
+	 * Sets the value of the node with the given key in etcd. Any previously
+	 * existing key-value pair is returned as prevNode in the etcd response.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param value
+	 *            the node's value
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> put(final String key, final String value) {
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Sets the value of the node with the given key in etcd.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param value
+	 *            the node's value
+	 * @param ttl
+	 *            the node's time-to-live or <code>-1</code> to unset existing
+	 *            ttl
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> put(String key, String value, int ttl) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Deletes the node with the given key from etcd.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> delete(final String key) {
+		StringBuilder target = EtcdUris.keys(key);
+
+		return execute("delete", key, target.toString(), HttpMethod.DELETE, null, client.getResponseExtractor());
+	}
+
+	/**
+	 * Creates a new node with the given key-value pair under the node with the
+	 * given key.
+	 * 
+	 * @param key
+	 *            the directory node's key
+	 * @param value
+	 *            the value of the created node
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> create(final String key, final String value) {
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("create", key, target.toString(), HttpMethod.POST, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically creates or updates a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param prevExist
+	 *            <code>true</code> if the existing node should be updated,
+	 *            <code>false</code> of the node should be created
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndSwap(final String key, final String value, boolean prevExist) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevExist", prevExist);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically creates or updates a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param ttl
+	 *            the time-to-live
+	 * @param prevExist
+	 *            <code>true</code> if the existing node should be updated,
+	 *            <code>false</code> of the node should be created
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndSwap(final String key, final String value, int ttl,
+			boolean prevExist) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		EtcdUris.param(target, "prevExist", prevExist);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically updates a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param prevIndex
+	 *            the modified index of the key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndSwap(String key, String value, int prevIndex) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevIndex", prevIndex);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically updates a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param ttl
+	 *            the time-to-live
+	 * @param prevIndex
+	 *            the modified index of the key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndSwap(String key, String value, int ttl, int prevIndex) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		EtcdUris.param(target, "prevIndex", prevIndex);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically updates a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param prevValue
+	 *            the previous value of the key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndSwap(String key, String value, String prevValue) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevValue", prevValue);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically updates a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param ttl
+	 *            the time-to-live
+	 * @param prevValue
+	 *            the previous value of the key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndSwap(String key, String value, int ttl, String prevValue) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		EtcdUris.param(target, "prevValue", prevValue);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically deletes a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param prevIndex
+	 *            the modified index of the key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndDelete(final String key, int prevIndex) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevIndex", prevIndex);
+
+		return execute("cad", key, target.toString(), HttpMethod.DELETE, null, client.getResponseExtractor());
+	}
+
+	/**
+	 * Atomically deletes a key-value pair in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param prevValue
+	 *            the previous value of the key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> compareAndDelete(final String key, String prevValue) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevValue", prevValue);
+
+		return execute("cad", key, target.toString(), HttpMethod.DELETE, null, client.getResponseExtractor());
+	}
+
+	/**
+	 * Creates a directory node in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> putDir(final String key) {
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("dir", "true");
+
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	/**
+	 * Creates a directory node in etcd.
+	 * 
+	 * @param key
+	 *            the key
+	 * @param ttl
+	 *            the time-to-live
+	 * @return the future response from etcd with the node
+	 */
+	public CompletableFuture<EtcdResponse> putDir(String key, int ttl) {
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("dir", "true", "ttl", ttl == -1 ? "" : String.valueOf(ttl));
+
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, client.getResponseExtractor());
+	}
+
+	public CompletableFuture<EtcdResponse> deleteDir(String key) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "dir", "true");
+
+		return execute("delete", key, target.toString(), HttpMethod.DELETE, null, client.getResponseExtractor());
+	}
+
+	public CompletableFuture<EtcdResponse> deleteDir(String key, boolean recursive) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "recursive", recursive);
+
+		return execute("delete", key, target.toString(), HttpMethod.DELETE, null, client.getResponseExtractor());
+	}
+
+	/**
+	 * Returns a representation of all members in the etcd cluster.
+	 * 
+	 * @return the future members
+	 */
+	public CompletableFuture<EtcdMemberResponse> listMembers() {
+		return execute("listMembers", null, EtcdUris.members().toString(), HttpMethod.GET, null,
+				client.getMemberResponseExtractor());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (this.requestFactory == null) {
+			if (HTTP_ASYNC_CLIENT_PRESENT) {
+				this.requestFactory = HttpComponentsRequestFactory.create(maxConnectionsPerLocation);
+			} else {
+				// each request in flight occupies a thread, so bound them like
+				// the connections of the event-driven request factory
+				ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConnectionsPerLocation,
+						maxConnectionsPerLocation, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+						new ThreadFactory() {
+
+							private final AtomicInteger count = new AtomicInteger();
+
+							@Override
+							public Thread newThread(Runnable r) {
+								Thread t = new Thread(r, "etcd-async-" + count.incrementAndGet());
+								t.setDaemon(true);
+								return t;
+							}
+						});
+				executor.allowCoreThreadTimeOut(true);
+				requestExecutor = executor;
+
+				SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+				requestFactory.setConnectTimeout(1000);
+				requestFactory.setReadTimeout(3000);
+				requestFactory.setTaskExecutor(new TaskExecutorAdapter(executor));
+				this.requestFactory = requestFactory;
+			}
+			requestFactoryCreated = true;
+		}
+
+		template = new AsyncRestTemplate(this.requestFactory);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() throws Exception {
+		retryScheduler.shutdownNow();
+		if (clientCreated) {
+			client.destroy();
+		}
+		if (requestFactoryCreated && requestFactory instanceof DisposableBean) {
+			((DisposableBean) requestFactory).destroy();
+		}
+		if (requestExecutor != null) {
+			requestExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Executes the given method on the member selected by the client using the
+	 * given form encoded request body and retries it on another member in case
+	 * of an I/O error.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param key
+	 *            the node's key or <code>null</code>
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @param method
+	 *            the HTTP method
+	 * @param body
+	 *            the form encoded request body or <code>null</code>
+	 * @param responseExtractor
+	 *            the extractor for the response
+	 * @return the future etcd response, completed exceptionally with an
+	 *         {@link EtcdException} in case etcd returned an error
+	 */
+	private <T> CompletableFuture<T> execute(String operation, String key, String target, HttpMethod method,
+			byte[] body, ResponseExtractor<T> responseExtractor) {
+		if (method != HttpMethod.GET) {
+			client.advanceReadGeneration();
+		}
+
+		Request<T> request = new Request<>(operation, client.intercept(operation, key, method), target, method, body,
+				responseExtractor);
+		request.attempt();
+		return request.result;
+	}
+
+	/**
+	 * A request in flight. Its attempts are executed one after the other, so
+	 * each attempt sees the state left by the previous one.
+	 */
+	private class Request<T> {
+
+		/**
+		 * future etcd response
+		 */
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+
+		/**
+		 * operation
+		 */
+		private final String operation;
+
+		/**
+		 * invocation passed to the interceptors or <code>null</code>
+		 */
+		private final EtcdInvocation invocation;
+
+		/**
+		 * request target relative to the base URI
+		 */
+		private final String target;
+
+		/**
+		 * HTTP method
+		 */
+		private final HttpMethod method;
+
+		/**
+		 * form encoded request body or <code>null</code>
+		 */
+		private final byte[] body;
+
+		/**
+		 * extractor for the response
+		 */
+		private final ResponseExtractor<T> responseExtractor;
+
+		/**
+		 * start time of the request in nanoseconds
+		 */
+		private final long startTime = System.nanoTime();
+
+		/**
+		 * start time of the request in milliseconds
+		 */
+		private final long startTimeMillis = System.currentTimeMillis();
+
+		/**
+		 * number of attempts so far
+		 */
+		private int attempts;
+
+		/**
+		 * URI of the last failed attempt or <code>null</code>
+		 */
+		private URI failed;
+
+		Request(String operation, EtcdInvocation invocation, String target, HttpMethod method, byte[] body,
+				ResponseExtractor<T> responseExtractor) {
+			this.operation = operation;
+			this.invocation = invocation;
+			this.target = target;
+			this.method = method;
+			this.body = body;
+			this.responseExtractor = responseExtractor;
+		}
+
+		/**
+		 * Executes the next attempt on the leader for mutating requests if it
+		 * is known, otherwise on the member selected by the client.
+		 */
+		void attempt() {
+			final EtcdRoutingTable routing = client.getRoutingTable();
+			final int member;
+			final URI uri;
+			try {
+				String leaderBase = method != HttpMethod.GET ? client.getLeaderBase() : null;
+				member = leaderBase == null ? client.selectMember(routing) : -1;
+				uri = leaderBase == null ? routing.uri(member, target) : EtcdUris.uri(leaderBase, target);
+			} catch (EtcdException e) {
+				complete(null, e);
+				return;
+			}
+			if (failed != null && !uri.getAuthority().equals(failed.getAuthority())) {
+				client.getMetrics().failover(operation);
+			}
+
+			final int attempt = ++attempts;
+			HttpHeaders headers = invocation == null ? null : invocation.beforeAttempt(attempt, uri.getAuthority());
+			final long attemptStartTime = System.nanoTime();
+			ListenableFutureCallback<T> callback = new ListenableFutureCallback<T>() {
+
+				@Override
+				public void onSuccess(T response) {
+					long latency = System.nanoTime() - attemptStartTime;
+					client.reportSuccess(operation, routing, member, uri, latency, latency);
+					afterAttempt(attempt, uri, latency, null);
+					client.getMetrics().operation(operation, Outcome.SUCCESS, System.nanoTime() - startTime);
+					complete(response, null);
+				}
+
+				@Override
+				public void onFailure(Throwable e) {
+					long latency = System.nanoTime() - attemptStartTime;
+					if (e instanceof HttpStatusCodeException) {
+						EtcdException exception = client.reportHttpError(operation, routing, member, uri, method,
+								(HttpStatusCodeException) e, latency);
+						afterAttempt(attempt, uri, latency, exception);
+						client.getMetrics().operation(operation, Outcome.HTTP_ERROR, System.nanoTime() - startTime);
+						complete(null, exception);
+					} else if (e instanceof ResourceAccessException || e instanceof IOException) {
+						ResourceAccessException exception = e instanceof ResourceAccessException
+								? (ResourceAccessException) e
+								: new ResourceAccessException(
+										"I/O error on " + method + " request for \"" + uri + "\": " + e.getMessage(),
+										(IOException) e);
+						client.reportIoError(operation, routing, member, uri, latency);
+						afterAttempt(attempt, uri, latency, exception);
+						retry(member, uri, exception);
+					} else {
+						afterAttempt(attempt, uri, latency, e);
+						complete(null, e);
+					}
+				}
+			};
+
+			try {
+				template.execute(uri, method,
+						body == null && headers == null ? null : new EtcdClient.FormRequestCallback(body, headers),
+						responseExtractor).addCallback(callback);
+			} catch (RuntimeException e) {
+				// some request factories fail before the request is dispatched
+				callback.onFailure(e);
+			}
+		}
+
+		/**
+		 * Schedules the next attempt after the failed attempt on the given
+		 * member if the retry is allowed.
+		 */
+		private void retry(int member, URI uri, ResourceAccessException e) {
+			log.debug("Failed to execute " + method + " " + uri + ", retrying if possible.", e);
+
+			if (member < 0) {
+				client.invalidateLeader();
+			}
+
+			long delay = EtcdClient.retryDelay(attempts, startTimeMillis, retryCount, retryDuration, retryPolicy,
+					retryBudget);
+			if (delay < 0) {
+				client.getMetrics().operation(operation, Outcome.IO_ERROR, System.nanoTime() - startTime);
+				complete(null, e);
+				return;
+			}
+			client.getMetrics().retry(operation);
+			failed = uri;
+
+			try {
+				retryScheduler.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						attempt();
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException ex) {
+				complete(null, new IllegalStateException("The etcd client is shut down.", ex));
+			}
+		}
+
+		/**
+		 * Notifies the interceptors that the given attempt ended.
+		 */
+		private void afterAttempt(int attempt, URI uri, long latency, Throwable error) {
+			if (invocation != null) {
+				invocation.afterAttempt(attempt, uri.getAuthority(), latency, asException(error));
+			}
+		}
+
+		/**
+		 * Notifies the interceptors that the request ended and completes the
+		 * future response.
+		 */
+		private void complete(T response, Throwable error) {
+			if (invocation != null) {
+				invocation.afterOperation(attempts, asException(error));
+			}
+
+			if (error == null) {
+				result.complete(response);
+			} else {
+				result.completeExceptionally(error);
+			}
+		}
+	}
+
+	/**
+	 * @return the given error as exception for the interceptors
+	 */
+	private static Exception asException(Throwable error) {
+		return error == null || error instanceof Exception ? (Exception) error : new RuntimeException(error);
+	}
+
+	/**
+	 * Creates the event-driven request factory. Kept in a separate class so
+	 * Apache HttpAsyncClient is only loaded if it is present.
+	 */
+	private static class HttpComponentsRequestFactory {
+
+		static AsyncClientHttpRequestFactory create(int maxConnectionsPerLocation) {
+			HttpComponentsAsyncClientHttpRequestFactory requestFactory = new HttpComponentsAsyncClientHttpRequestFactory(
+					HttpAsyncClients.custom().useSystemProperties().setMaxConnPerRoute(maxConnectionsPerLocation)
+							.setMaxConnTotal(maxConnectionsPerLocation * 8).build());
+			requestFactory.setConnectTimeout(1000);
+			requestFactory.setReadTimeout(3000);
+			return requestFactory;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Retry policy with exponentially growing delays. With full jitter, the delay
+ * is chosen randomly between <code>0</code> and the exponential delay, so
+ * clients failing at the same time do not retry at the same time.
+ */
+public class EtcdBackoffRetryPolicy implements EtcdRetryPolicy {
+
+	/**
+	 * delay in milliseconds before the first retry
+	 */
+	@Getter
+	@Setter
+	private long initialDelay = 50;
+
+	/**
+	 * maximum delay in milliseconds before a retry
+	 */
+	@Getter
+	@Setter
+	private long maxDelay = 2000;
+
+	/**
+	 * factor the delay grows by with every retry
+	 */
+	@Getter
+	@Setter
+	private double multiplier = 2;
+
+	/**
+	 * indicates whether the delay is chosen randomly up to the exponential
+	 * delay
+	 */
+	@Getter
+	@Setter
+	private boolean jitter = true;
+
+	@Override
+	public long getDelay(int retry) {
+		double delay = initialDelay * Math.pow(multiplier, retry - 1);
+		long bounded = (long) Math.min(delay, maxDelay);
+		if (jitter && bounded > 0) {
+			return ThreadLocalRandom.current().nextLong(bounded + 1);
+		}
+		return bounded;
+	}
+}
@@ -24,31 +24,71 @@
 package org.zalando.boot.etcd;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.RequestEntity;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AsyncClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.support.AllEncompassingFormHttpMessageConverter;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.AsyncRequestCallback;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.zalando.boot.etcd.AbstractEtcdMemberSelector.State;
+import org.zalando.boot.etcd.EtcdClientMetrics.Outcome;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -64,60 +104,227 @@ import lombok.extern.slf4j.Slf4j;
 public class EtcdClient implements InitializingBean, DisposableBean {
 
 	/**
-	 * base path
+	 * request converter
 	 */
-	private static final String BASE_PATH = "{location}/v2";
+	private AllEncompassingFormHttpMessageConverter requestConverter = new AllEncompassingFormHttpMessageConverter();
 
 	/**
-	 * key space containing all nodes with key-value pairs
+	 * response converter
 	 */
-	private static final String KEYSPACE = BASE_PATH + "/keys";
+	private MappingJackson2HttpMessageConverter responseConverter = new MappingJackson2HttpMessageConverter();
 
 	/**
-	 * member space
+	 * extractor for responses of key space requests
 	 */
-	private static final String MEMBERSPACE = BASE_PATH + "/members";
+	private final ResponseExtractor<EtcdResponse> responseExtractor = new JsonResponseExtractor<>(
+			EtcdResponse.class);
 
 	/**
-	 * request converter
+	 * extractor for responses of member space requests
 	 */
-	private AllEncompassingFormHttpMessageConverter requestConverter = new AllEncompassingFormHttpMessageConverter();
+	private final ResponseExtractor<EtcdMemberResponse> memberResponseExtractor = new JsonResponseExtractor<>(
+			EtcdMemberResponse.class);
 
 	/**
-	 * response converter
+	 * extractor for responses of statistics requests
 	 */
-	private MappingJackson2HttpMessageConverter responseConverter = new MappingJackson2HttpMessageConverter();
+	private final ResponseExtractor<EtcdSelfStats> selfStatsExtractor = new JsonResponseExtractor<>(
+			EtcdSelfStats.class);
+
+	/**
+	 * extractor for responses of member probes, discarding the body
+	 */
+	private static final ResponseExtractor<Void> probeExtractor = new ResponseExtractor<Void>() {
+
+		@Override
+		public Void extractData(ClientHttpResponse response) throws IOException {
+			StreamUtils.drain(response.getBody());
+			return null;
+		}
+	};
 
 	/**
-	 * request factory
+	 * request factory, destroyed together with the client if it is a
+	 * {@link DisposableBean}
 	 */
 	@Getter
 	@Setter
 	private ClientHttpRequestFactory requestFactory;
 
+	/**
+	 * request factory used for watches, destroyed together with the client if
+	 * it is a {@link DisposableBean}
+	 */
+	@Getter
+	@Setter
+	private ClientHttpRequestFactory watchRequestFactory;
+
 	/**
 	 * template.
 	 */
 	private RestTemplate template;
 
 	/**
-	 * number of retries
+	 * template used for watches.
+	 */
+	private RestTemplate watchTemplate;
+
+	/**
+	 * maximum number of retries of a request or <code>0</code> to retry until
+	 * the retry duration elapsed
 	 */
 	@Getter
 	@Setter
 	private int retryCount = 0;
 
 	/**
-	 * duration of retries
+	 * maximum duration of retries in milliseconds
 	 */
 	@Getter
 	@Setter
 	private int retryDuration = 0;
 
 	/**
+	 * policy deciding the delay before a retry
+	 */
+	@Getter
+	@Setter
+	private EtcdRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+
+	/**
+	 * budget limiting the retries to a fraction of the successful requests or
+	 * <code>null</code> for unlimited retries
+	 */
+	@Getter
+	@Setter
+	private EtcdRetryBudget retryBudget = new EtcdRetryBudget(0.1, 10);
+
+	/**
+	 * maximum duration of a single watch request in milliseconds
+	 */
+	@Getter
+	@Setter
+	private int watchTimeout = 60000;
+
+	/**
+	 * indicates whether concurrent identical reads share a single request
+	 */
+	@Getter
+	@Setter
+	private boolean readCoalescingEnabled = true;
+
+	/**
+	 * reads in flight by request URI
+	 */
+	private final ConcurrentMap<String, Read> reads = new ConcurrentHashMap<>();
+
+	/**
+	 * generation of reads, advanced by every write
+	 */
+	private final AtomicLong readGeneration = new AtomicLong();
+
+	/**
+	 * number of reads served by a request in flight
+	 */
+	private final LongAdder coalescedReads = new LongAdder();
+
+	/**
+	 * indicates whether slow reads are sent to a second member
+	 */
+	@Getter
+	@Setter
+	private boolean hedgingEnabled = false;
+
+	/**
+	 * delay in milliseconds before a read is sent to a second member
+	 */
+	@Getter
+	@Setter
+	private long hedgeDelay = 50;
+
+	/**
+	 * percentile of the observed read latency used as hedge delay instead of
+	 * the fixed delay, or 0 to always use the fixed delay
+	 */
+	@Getter
+	private double hedgePercentile = 0.95;
+
+	/**
+	 * latencies of recent reads
+	 */
+	private final EtcdLatencyWindow readLatencies = new EtcdLatencyWindow(1024, 0.95);
+
+	/**
+	 * number of reads sent to a second member
+	 */
+	private final LongAdder hedgedReads = new LongAdder();
+
+	/**
+	 * maximum number of concurrent requests of a single batch read
+	 */
+	@Getter
+	@Setter
+	private int batchConcurrency = 8;
+
+	/**
+	 * members requests are routed to, replaced as a whole on every change
+	 */
+	private volatile EtcdRoutingTable routing = EtcdRoutingTable.EMPTY;
+
+	/**
+	 * time in milliseconds all members are probed within when updating the
 	 * locations
 	 */
-	private String[] locations;
+	@Getter
+	@Setter
+	private long probeTimeout = 2000;
+
+	/**
+	 * minimum interval in milliseconds between updates of the locations, used
+	 * after a change or a failure
+	 */
+	@Getter
+	@Setter
+	private long updateInterval = 5000;
+
+	/**
+	 * maximum interval in milliseconds between updates of the locations the
+	 * interval backs off to while the members are stable
+	 */
+	@Getter
+	@Setter
+	private long maxUpdateInterval = 300000;
+
+	/**
+	 * current interval in milliseconds between updates of the locations
+	 */
+	private volatile long currentUpdateInterval;
+
+	/**
+	 * next scheduled update of the locations
+	 */
+	private ScheduledFuture<?> memberUpdate;
+
+	/**
+	 * result of the last update of the locations or <code>null</code> if the
+	 * locations were not updated yet
+	 */
+	private volatile MemberUpdate lastMemberUpdate;
+
+	/**
+	 * indicates whether connections to all members are opened and measured
+	 * on startup
+	 */
+	@Getter
+	@Setter
+	private boolean warmUpEnabled = false;
+
+	/**
+	 * time in milliseconds the warm-up on startup may take at most
+	 */
+	@Getter
+	@Setter
+	private long warmUpTimeout = 2000;
 
 	/**
 	 * indicates whether the location updater is enabled
@@ -125,9 +332,60 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	private boolean locationUpdaterEnabled = true;
 
 	/**
-	 * current location
+	 * metrics receiving the measurements of all requests
+	 */
+	@Getter
+	private EtcdClientMetrics metrics = EtcdClientMetrics.NONE;
+
+	/**
+	 * interceptors called around every operation
+	 */
+	private volatile EtcdClientInterceptor[] interceptors = new EtcdClientInterceptor[0];
+
+	/**
+	 * strategy selecting the member a request is sent to
+	 */
+	@Getter
+	private EtcdMemberSelector memberSelector = new EtcdEwmaMemberSelector();
+
+	/**
+	 * most recently selected location
+	 */
+	private volatile String currentLocation;
+
+	/**
+	 * indicates whether mutating requests are sent to the leader directly
+	 * instead of being proxied by a follower, the leader is discovered by the
+	 * location updater or by calling {@link #discoverLeader()}
+	 */
+	@Getter
+	@Setter
+	private boolean leaderRoutingEnabled = true;
+
+	/**
+	 * location of the current leader or <code>null</code> if unknown
+	 */
+	private volatile String leader;
+
+	/**
+	 * base URI of the current leader or <code>null</code> if unknown
+	 */
+	private volatile String leaderBase;
+
+	/**
+	 * raft term the current leader was discovered in
+	 */
+	private volatile long leaderTerm;
+
+	/**
+	 * highest raft term reported by any member
 	 */
-	private int locationIndex = 0;
+	private final AtomicLong raftTerm = new AtomicLong();
+
+	/**
+	 * indicates whether a leader discovery is scheduled
+	 */
+	private final AtomicBoolean leaderDiscoveryScheduled = new AtomicBoolean();
 
 	/**
 	 * location updater
@@ -142,6 +400,88 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 		}
 	});
 
+	/**
+	 * watcher
+	 */
+	private ExecutorService watcher = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "etcd-watcher-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * executor of streamed listings
+	 */
+	private ExecutorService listingExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "etcd-listing-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * executor of member probes
+	 */
+	private ExecutorService probeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "etcd-probe-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * maximum number of threads executing hedged reads
+	 */
+	private static final int MAX_HEDGE_THREADS = 64;
+
+	/**
+	 * executor of hedged reads, bounded so that a slow cluster cannot pile
+	 * up threads
+	 */
+	private ExecutorService hedgeExecutor = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS, 60L, TimeUnit.SECONDS,
+			new SynchronousQueue<Runnable>(), new ThreadFactory() {
+
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "etcd-hedge-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	/**
+	 * executor of batch reads
+	 */
+	private ExecutorService batchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "etcd-batch-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
 	/**
 	 * Creates a new EtcdClient.
 	 */
@@ -156,7 +496,7 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *            the location
 	 */
 	public EtcdClient(String location) {
-		this.locations = new String[] { location };
+		setLocations(new String[] { location });
 	}
 
 	/**
@@ -166,7 +506,7 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *            the locations
 	 */
 	public EtcdClient(String[] locations) {
-		this.locations = locations;
+		setLocations(locations);
 	}
 
 	public boolean isLocationUpdaterEnabled() {
@@ -181,22 +521,69 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 * @param value
 	 *            the locations
 	 */
-	public void setLocations(String[] value) {
-		this.locations = value == null ? new String[0] : value;
+	public synchronized void setLocations(String[] value) {
+		String[] locations = value == null ? new String[0] : value;
+		if (routing.hasLocations(locations)) {
+			// keep the statistics of the members
+			return;
+		}
+
+		EtcdRoutingTable routing = new EtcdRoutingTable(locations);
+		this.routing = routing;
+		metrics.members(routing.locations());
+	}
+
+	/**
+	 * @param memberSelector
+	 *            the strategy selecting the member a request is sent to
+	 */
+	public synchronized void setMemberSelector(EtcdMemberSelector memberSelector) {
+		this.memberSelector = memberSelector;
+	}
+
+	/**
+	 * @param metrics
+	 *            the metrics receiving the measurements of all requests or
+	 *            <code>null</code> to discard them
+	 */
+	public void setMetrics(EtcdClientMetrics metrics) {
+		this.metrics = metrics == null ? EtcdClientMetrics.NONE : metrics;
+		this.metrics.members(routing.locations());
+	}
+
+	/**
+	 * @return the interceptors called around every operation
+	 */
+	public List<EtcdClientInterceptor> getInterceptors() {
+		return Collections.unmodifiableList(Arrays.asList(interceptors));
+	}
+
+	/**
+	 * @param interceptors
+	 *            the interceptors called around every operation, in the given
+	 *            order before and in reverse order after an attempt or
+	 *            operation
+	 */
+	public void setInterceptors(List<EtcdClientInterceptor> interceptors) {
+		this.interceptors = interceptors == null ? new EtcdClientInterceptor[0]
+				: interceptors.toArray(new EtcdClientInterceptor[interceptors.size()]);
 	}
 
 	/**
 	 * @return the locations
 	 */
 	public String[] getLocations() {
-		return locations;
+		return routing.locations();
 	}
 
 	/**
-	 * @return the current location
+	 * @return the current location or <code>null</code> if no location is
+	 *         known
 	 */
 	protected String getCurrentLocation() {
-		return locations[locationIndex];
+		String location = currentLocation;
+		EtcdRoutingTable routing = this.routing;
+		return location != null || routing.size() == 0 ? location : routing.location(0);
 	}
 
 	/**
@@ -209,10 +596,9 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse get(String key) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
+		StringBuilder target = EtcdUris.keys(key);
 
-		return execute(builder, HttpMethod.GET, null, EtcdResponse.class);
+		return executeRead(key, target.toString());
 	}
 
 	/**
@@ -228,96 +614,225 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse get(String key, boolean recursive) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("recursive", recursive);
-
-		return execute(builder, HttpMethod.GET, null, EtcdResponse.class);
+		return read(key, recursive);
 	}
 
 	/**
-	 * Sets the value of the node with the given key in etcd. Any previously
-	 * existing key-value pair is returned as prevNode in the etcd response.
+	 * Reads the node with the given key from etcd. Other than
+	 * {@link #get(String, boolean)} this method is never overridden, so the
+	 * node is always read from the etcd cluster.
 	 * 
 	 * @param key
 	 *            the node's key
-	 * @param value
-	 *            the node's value
+	 * @param recursive
+	 *            <code>true</code> if child nodes should be returned,
+	 *            <code>false</code> otherwise
 	 * @return the response from etcd with the node
 	 * @throws EtcdException
 	 *             in case etcd returned an error
 	 */
-	public EtcdResponse put(final String key, final String value) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
+	final EtcdResponse read(String key, boolean recursive) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "recursive", recursive);
 
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
-
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return executeRead(key, target.toString());
 	}
 
 	/**
-	 * Sets the value of the node with the given key in etcd.
+	 * Reads the node with the given key and its descendants from etcd and
+	 * calls the given visitor for every leaf node. Other than
+	 * {@link #get(String, boolean)} the response is parsed incrementally, so
+	 * only a single node is held in memory at a time, no matter how large the
+	 * listing is. A failed request is retried like any other request, but only
+	 * if no node was visited yet. Only the time until etcd answers counts as
+	 * latency of the member, so a slow visitor does not make the member look
+	 * slow to the member selector.
 	 * 
 	 * @param key
 	 *            the node's key
-	 * @param value
-	 *            the node's value
-	 * @param ttl
-	 *            the node's time-to-live or <code>-1</code> to unset existing
-	 *            ttl
-	 * @return the response from etcd with the node
+	 * @param visitor
+	 *            the visitor
+	 * @return the number of visited leaf nodes
 	 * @throws EtcdException
 	 *             in case etcd returned an error
 	 */
-	public EtcdResponse put(String key, String value, int ttl) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("ttl", ttl == -1 ? "" : ttl);
-
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
+	public int visit(String key, final EtcdVisitor visitor) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "recursive", true);
+
+		final AtomicInteger visited = new AtomicInteger();
+		ResponseExtractor<Integer> extractor = new ResponseExtractor<Integer>() {
+
+			@Override
+			public Integer extractData(ClientHttpResponse response) throws IOException {
+				try (JsonParser parser = responseConverter.getObjectMapper().getFactory()
+						.createParser(response.getBody())) {
+					if (parser.nextToken() != JsonToken.START_OBJECT) {
+						throw new JsonParseException(parser, "Expected etcd response object");
+					}
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						String field = parser.getCurrentName();
+						if (parser.nextToken() == JsonToken.START_OBJECT && "node".equals(field)) {
+							visitNode(parser, visitor, visited);
+						} else {
+							parser.skipChildren();
+						}
+					}
+					return visited.get();
+				} catch (IOException e) {
+					if (visited.get() > 0) {
+						throw new PartialResponseException(
+								"Failed to read listing after " + visited.get() + " visited nodes.", e);
+					}
+					throw e;
+				}
+			}
+		};
 
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("visit", key, target.toString(), HttpMethod.GET, null, extractor);
 	}
 
 	/**
-	 * Deletes the node with the given key from etcd.
+	 * Returns the nodes with the given keys from etcd. The keys are read in
+	 * parallel, spread over the healthy members.
 	 * 
-	 * @param key
-	 *            the node's key
-	 * @return the response from etcd with the node
-	 * @throws EtcdException
-	 *             in case etcd returned an error
+	 * @param keys
+	 *            the nodes' keys
+	 * @return the nodes and the errors by key
 	 */
-	public EtcdResponse delete(final String key) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-
-		return execute(builder, HttpMethod.DELETE, null, EtcdResponse.class);
+	public EtcdBatchResponse getAll(Collection<String> keys) {
+		return getAll(keys, false);
 	}
 
 	/**
-	 * Creates a new node with the given key-value pair under the node with the
-	 * given key.
+	 * Returns the nodes with the given keys from etcd. The keys are read in
+	 * parallel using at most {@link #getBatchConcurrency()} concurrent
+	 * requests. The reads of a batch are spread over the members whose
+	 * circuit breaker is closed in turn, and retried through the member
+	 * selector like any other request. Batch reads are not hedged.
 	 * 
-	 * @param key
-	 *            the directory node's key
-	 * @param value
-	 *            the value of the created node
-	 * @return the response from etcd with the node
-	 * @throws EtcdException
+	 * @param keys
+	 *            the nodes' keys
+	 * @param quorum
+	 *            <code>true</code> if the nodes should be read through the
+	 *            leader, <code>false</code> if any member may answer
+	 * @return the nodes and the errors by key
+	 */
+	public EtcdBatchResponse getAll(Collection<String> keys, final boolean quorum) {
+		final List<String> batch = new ArrayList<>(new LinkedHashSet<>(keys));
+		final EtcdNode[] nodes = new EtcdNode[batch.size()];
+		final Exception[] errors = new Exception[batch.size()];
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger spread = new AtomicInteger(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+
+		Runnable worker = new Runnable() {
+
+			@Override
+			public void run() {
+				for (int i = next.getAndIncrement(); i < batch.size(); i = next.getAndIncrement()) {
+					try {
+						EtcdResponse response = quorum ? readQuorum(batch.get(i))
+								: executeRead(batch.get(i), EtcdUris.keys(batch.get(i)).toString(), spread);
+						nodes[i] = response.getNode();
+					} catch (EtcdException | RuntimeException e) {
+						errors[i] = e;
+					}
+				}
+			}
+		};
+
+		List<Future<?>> workers = new ArrayList<>();
+		for (int i = 1; i < Math.min(batchConcurrency, batch.size()); i++) {
+			workers.add(batchExecutor.submit(worker));
+		}
+		worker.run();
+		awaitAll(workers);
+
+		Map<String, EtcdNode> nodesByKey = new LinkedHashMap<>();
+		Map<String, Exception> errorsByKey = new LinkedHashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			if (errors[i] != null) {
+				errorsByKey.put(batch.get(i), errors[i]);
+			} else {
+				nodesByKey.put(batch.get(i), nodes[i]);
+			}
+		}
+		return new EtcdBatchResponse(nodesByKey, errorsByKey);
+	}
+
+	/**
+	 * Sets the value of the node with the given key in etcd. Any previously
+	 * existing key-value pair is returned as prevNode in the etcd response.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param value
+	 *            the node's value
+	 * @return the response from etcd with the node
+	 * @throws EtcdException
 	 *             in case etcd returned an error
 	 */
-	public EtcdResponse create(final String key, final String value) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
+	public EtcdResponse put(final String key, final String value) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
+	}
+
+	/**
+	 * Sets the value of the node with the given key in etcd.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param value
+	 *            the node's value
+	 * @param ttl
+	 *            the node's time-to-live or <code>-1</code> to unset existing
+	 *            ttl
+	 * @return the response from etcd with the node
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	public EtcdResponse put(String key, String value, int ttl) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		byte[] body = EtcdUris.form("value", value);
+
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
+	}
+
+	/**
+	 * Deletes the node with the given key from etcd.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @return the response from etcd with the node
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	public EtcdResponse delete(final String key) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+
+		return execute("delete", key, target.toString(), HttpMethod.DELETE, null, responseExtractor);
+	}
 
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
+	/**
+	 * Creates a new node with the given key-value pair under the node with the
+	 * given key.
+	 * 
+	 * @param key
+	 *            the directory node's key
+	 * @param value
+	 *            the value of the created node
+	 * @return the response from etcd with the node
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	public EtcdResponse create(final String key, final String value) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("value", value);
 
-		return execute(builder, HttpMethod.POST, payload, EtcdResponse.class);
+		return execute("create", key, target.toString(), HttpMethod.POST, body, responseExtractor);
 	}
 
 	/**
@@ -335,14 +850,11 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse compareAndSwap(final String key, final String value, boolean prevExist) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("prevExist", prevExist);
-
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevExist", prevExist);
+		byte[] body = EtcdUris.form("value", value);
 
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	/**
@@ -363,15 +875,12 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 */
 	public EtcdResponse compareAndSwap(final String key, final String value, int ttl, boolean prevExist)
 			throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("ttl", ttl == -1 ? "" : ttl);
-		builder.queryParam("prevExist", prevExist);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		EtcdUris.param(target, "prevExist", prevExist);
+		byte[] body = EtcdUris.form("value", value);
 
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
-
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	/**
@@ -388,14 +897,11 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse compareAndSwap(String key, String value, int prevIndex) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("prevIndex", prevIndex);
-
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevIndex", prevIndex);
+		byte[] body = EtcdUris.form("value", value);
 
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	/**
@@ -414,15 +920,12 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse compareAndSwap(String key, String value, int ttl, int prevIndex) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("ttl", ttl == -1 ? "" : ttl);
-		builder.queryParam("prevIndex", prevIndex);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		EtcdUris.param(target, "prevIndex", prevIndex);
+		byte[] body = EtcdUris.form("value", value);
 
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
-
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	/**
@@ -439,14 +942,11 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse compareAndSwap(String key, String value, String prevValue) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("prevValue", prevValue);
-
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevValue", prevValue);
+		byte[] body = EtcdUris.form("value", value);
 
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	/**
@@ -465,15 +965,12 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse compareAndSwap(String key, String value, int ttl, String prevValue) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("ttl", ttl == -1 ? "" : ttl);
-		builder.queryParam("prevValue", prevValue);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, ttl);
+		EtcdUris.param(target, "prevValue", prevValue);
+		byte[] body = EtcdUris.form("value", value);
 
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("value", value);
-
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("cas", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	/**
@@ -488,11 +985,10 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse compareAndDelete(final String key, int prevIndex) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("prevIndex", prevIndex);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevIndex", prevIndex);
 
-		return execute(builder, HttpMethod.DELETE, null, EtcdResponse.class);
+		return execute("cad", key, target.toString(), HttpMethod.DELETE, null, responseExtractor);
 	}
 
 	/**
@@ -507,11 +1003,10 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse compareAndDelete(final String key, String prevValue) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("prevValue", prevValue);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "prevValue", prevValue);
 
-		return execute(builder, HttpMethod.DELETE, null, EtcdResponse.class);
+		return execute("cad", key, target.toString(), HttpMethod.DELETE, null, responseExtractor);
 	}
 
 	/**
@@ -524,13 +1019,10 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse putDir(final String key) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("dir", "true");
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("dir", "true");
 
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	/**
@@ -545,30 +1037,139 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdResponse putDir(String key, int ttl) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
+		StringBuilder target = EtcdUris.keys(key);
+		byte[] body = EtcdUris.form("dir", "true", "ttl", ttl == -1 ? "" : String.valueOf(ttl));
 
-		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
-		payload.set("dir", "true");
-		payload.set("ttl", ttl == -1 ? "" : String.valueOf(ttl));
-
-		return execute(builder, HttpMethod.PUT, payload, EtcdResponse.class);
+		return execute("put", key, target.toString(), HttpMethod.PUT, body, responseExtractor);
 	}
 
 	public EtcdResponse deleteDir(String key) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("dir", "true");
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "dir", "true");
 
-		return execute(builder, HttpMethod.DELETE, null, EtcdResponse.class);
+		return execute("delete", key, target.toString(), HttpMethod.DELETE, null, responseExtractor);
 	}
 
 	public EtcdResponse deleteDir(String key, boolean recursive) throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(KEYSPACE);
-		builder.pathSegment(key);
-		builder.queryParam("recursive", recursive);
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "recursive", recursive);
+
+		return execute("delete", key, target.toString(), HttpMethod.DELETE, null, responseExtractor);
+	}
+
+	/**
+	 * Waits for the next change of the node with the given key.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param waitIndex
+	 *            the index of the change to wait for or <code>0</code> to wait
+	 *            for the next change
+	 * @return the response from etcd with the changed node or
+	 *         <code>null</code> if the node did not change within the watch
+	 *         timeout
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	public EtcdResponse watch(String key, int waitIndex) throws EtcdException {
+		return watch(key, waitIndex, false);
+	}
+
+	/**
+	 * Waits for the next change of the node with the given key.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param waitIndex
+	 *            the index of the change to wait for or <code>0</code> to wait
+	 *            for the next change
+	 * @param recursive
+	 *            <code>true</code> if changes of child nodes should be
+	 *            returned, <code>false</code> otherwise
+	 * @return the response from etcd with the changed node or
+	 *         <code>null</code> if the node did not change within the watch
+	 *         timeout
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	public EtcdResponse watch(String key, int waitIndex, boolean recursive) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "wait", true);
+		if (waitIndex > 0) {
+			EtcdUris.param(target, "waitIndex", waitIndex);
+		}
+		if (recursive) {
+			EtcdUris.param(target, "recursive", true);
+		}
+
+		return executeWatch(target.toString());
+	}
+
+	/**
+	 * Watches the node with the given key in the background and notifies the
+	 * given listener about every change after the node's current state.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param listener
+	 *            the listener
+	 * @return the watch
+	 */
+	public EtcdWatch watch(String key, EtcdListener listener) {
+		return watch(key, 0, false, listener);
+	}
+
+	/**
+	 * Watches the node with the given key in the background and notifies the
+	 * given listener about every change after the node's current state.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param recursive
+	 *            <code>true</code> if changes of child nodes should be
+	 *            watched, <code>false</code> otherwise
+	 * @param listener
+	 *            the listener
+	 * @return the watch
+	 */
+	public EtcdWatch watch(String key, boolean recursive, EtcdListener listener) {
+		return watch(key, 0, recursive, listener);
+	}
+
+	/**
+	 * Watches the node with the given key in the background and notifies the
+	 * given listener about every change starting with the given index.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param waitIndex
+	 *            the index of the first change to notify about or
+	 *            <code>0</code> to start after the node's current state
+	 * @param recursive
+	 *            <code>true</code> if changes of child nodes should be
+	 *            watched, <code>false</code> otherwise
+	 * @param listener
+	 *            the listener
+	 * @return the watch
+	 */
+	public EtcdWatch watch(String key, int waitIndex, boolean recursive, EtcdListener listener) {
+		EtcdWatch watch = new EtcdWatch(this, key, waitIndex, recursive, listener);
+		watcher.execute(watch);
+		return watch;
+	}
+
+	/**
+	 * @return the executor running background watches
+	 */
+	Executor getWatchExecutor() {
+		return watcher;
+	}
 
-		return execute(builder, HttpMethod.DELETE, null, EtcdResponse.class);
+	/**
+	 * @return the executor streaming listings to subscribers
+	 */
+	Executor getListingExecutor() {
+		return listingExecutor;
 	}
 
 	/**
@@ -579,8 +1180,162 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	 *             in case etcd returned an error
 	 */
 	public EtcdMemberResponse listMembers() throws EtcdException {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(MEMBERSPACE);
-		return execute(builder, HttpMethod.GET, null, EtcdMemberResponse.class);
+		return execute("listMembers", null, EtcdUris.members().toString(), HttpMethod.GET, null,
+				memberResponseExtractor);
+	}
+
+	/**
+	 * Returns the statistics of a member of the etcd cluster, including the
+	 * leader as seen by the member.
+	 * 
+	 * @return the statistics
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	public EtcdSelfStats getSelfStats() throws EtcdException {
+		return execute("stats", null, EtcdUris.selfStats().toString(), HttpMethod.GET, null, selfStatsExtractor);
+	}
+
+	/**
+	 * @return the location of the current leader or <code>null</code> if the
+	 *         leader is unknown
+	 */
+	public String getLeader() {
+		return leader;
+	}
+
+	/**
+	 * Discovers the current leader of the etcd cluster. Mutating requests are
+	 * sent to the discovered leader directly until a request to the leader
+	 * fails or a member reports a new raft term.
+	 * 
+	 * @return the location of the leader or <code>null</code> if the leader
+	 *         could not be determined
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	public String discoverLeader() throws EtcdException {
+		return discoverLeader(listMembers());
+	}
+
+	/**
+	 * Discovers the current leader among the given members.
+	 * 
+	 * @param response
+	 *            the members
+	 * @return the location of the leader or <code>null</code> if the leader
+	 *         could not be determined
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private String discoverLeader(EtcdMemberResponse response) throws EtcdException {
+		long term = raftTerm.get();
+		EtcdSelfStats stats = getSelfStats();
+
+		String leaderId = stats == null || stats.getLeaderInfo() == null ? null : stats.getLeaderInfo().getLeader();
+
+		String location = null;
+		if (leaderId != null && response != null && response.getMembers() != null) {
+			for (EtcdMember member : response.getMembers()) {
+				String[] clientUrls = member.getClientURLs();
+				if (leaderId.equals(member.getId()) && clientUrls != null && clientUrls.length > 0) {
+					location = clientUrls[0];
+				}
+			}
+		}
+
+		if (location == null) {
+			log.debug("Could not determine the leader of the etcd cluster.");
+		} else if (!location.equals(leader)) {
+			log.info("Sending mutating requests to etcd leader " + location + ".");
+		}
+
+		leaderTerm = term;
+		leaderBase = location == null ? null : EtcdUris.base(location);
+		leader = location;
+		return location;
+	}
+
+	/**
+	 * Forgets the current leader and discovers the leader again in the
+	 * background.
+	 */
+	void invalidateLeader() {
+		leaderBase = null;
+		leader = null;
+		accelerateMemberUpdate();
+
+		if (leaderRoutingEnabled && leaderDiscoveryScheduled.compareAndSet(false, true)) {
+			Runnable worker = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						discoverLeader();
+					} catch (EtcdException | RestClientException e) {
+						log.debug("Could not discover the leader of the etcd cluster.", e);
+					} finally {
+						leaderDiscoveryScheduled.set(false);
+					}
+				}
+			};
+			try {
+				locationUpdater.execute(worker);
+			} catch (RejectedExecutionException e) {
+				leaderDiscoveryScheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Reads the etcd index from the X-Etcd-Index header of a response.
+	 * 
+	 * @param headers
+	 *            the response headers
+	 * @return the etcd index or <code>0</code> if the header is missing or
+	 *         malformed
+	 */
+	private static int readEtcdIndex(HttpHeaders headers) {
+		String value = headers == null ? null : headers.getFirst("X-Etcd-Index");
+		if (value == null) {
+			return 0;
+		}
+
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Records the raft term reported by a member and forgets the current
+	 * leader if the term changed since the leader was discovered.
+	 * 
+	 * @param headers
+	 *            the response headers
+	 */
+	private void observeTerm(HttpHeaders headers) {
+		String value = headers == null ? null : headers.getFirst("X-Raft-Term");
+		if (value == null) {
+			return;
+		}
+
+		long term;
+		try {
+			term = Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return;
+		}
+
+		long current = raftTerm.get();
+		while (term > current && !raftTerm.compareAndSet(current, term)) {
+			current = raftTerm.get();
+		}
+
+		if (term > leaderTerm && leaderBase != null) {
+			log.debug("etcd raft term changed to " + term + ", discovering the leader again.");
+			invalidateLeader();
+		}
 	}
 
 	/**
@@ -600,14 +1355,79 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 		template = new RestTemplate(this.requestFactory);
 		template.setMessageConverters(Arrays.asList(requestConverter, responseConverter));
 
+		if (this.watchRequestFactory == null) {
+			SimpleClientHttpRequestFactory watchRequestFactory = new SimpleClientHttpRequestFactory();
+			watchRequestFactory.setConnectTimeout(1000);
+			watchRequestFactory.setReadTimeout(watchTimeout);
+			this.watchRequestFactory = watchRequestFactory;
+		}
+
+		watchTemplate = new RestTemplate(this.watchRequestFactory);
+		watchTemplate.setMessageConverters(Arrays.asList(requestConverter, responseConverter));
+
+		if (warmUpEnabled) {
+			warmUp();
+		}
+
 		if (locationUpdaterEnabled) {
-			Runnable worker = new Runnable() {
-				@Override
-				public void run() {
-					updateMembers();
+			if (leaderRoutingEnabled) {
+				invalidateLeader();
+			}
+
+			synchronized (this) {
+				currentUpdateInterval = updateInterval;
+				scheduleMemberUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Schedules the next update of the members after the current update
+	 * interval.
+	 */
+	private synchronized void scheduleMemberUpdate() {
+		Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				boolean stable = false;
+				try {
+					stable = updateMembers();
+				} catch (RuntimeException e) {
+					log.error("Could not update etcd cluster member.", e);
+				} finally {
+					synchronized (EtcdClient.this) {
+						// back off while the membership is stable, refresh fast otherwise
+						currentUpdateInterval = stable ? Math.min(currentUpdateInterval * 2, maxUpdateInterval)
+								: updateInterval;
+						scheduleMemberUpdate();
+					}
 				}
-			};
-			locationUpdater.scheduleAtFixedRate(worker, 5000, 5000, TimeUnit.MILLISECONDS);
+			}
+		};
+		try {
+			memberUpdate = locationUpdater.schedule(worker, currentUpdateInterval, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			log.debug("Not updating etcd cluster members because the client is shut down.");
+		}
+	}
+
+	/**
+	 * Brings the next update of the members forward to the minimum update
+	 * interval, e.g. after a member could not be reached.
+	 */
+	private void accelerateMemberUpdate() {
+		if (currentUpdateInterval <= updateInterval) {
+			return;
+		}
+
+		synchronized (this) {
+			ScheduledFuture<?> memberUpdate = this.memberUpdate;
+			currentUpdateInterval = updateInterval;
+			if (memberUpdate != null && memberUpdate.getDelay(TimeUnit.MILLISECONDS) > updateInterval
+					&& memberUpdate.cancel(false)) {
+				log.debug("Updating etcd cluster members in " + updateInterval + " ms.");
+				scheduleMemberUpdate();
+			}
 		}
 	}
 
@@ -619,100 +1439,1393 @@ public class EtcdClient implements InitializingBean, DisposableBean {
 	@Override
 	public void destroy() throws Exception {
 		locationUpdater.shutdownNow();
+		watcher.shutdownNow();
+		listingExecutor.shutdownNow();
+		batchExecutor.shutdownNow();
+		hedgeExecutor.shutdownNow();
+		probeExecutor.shutdownNow();
+
+		if (requestFactory instanceof DisposableBean) {
+			((DisposableBean) requestFactory).destroy();
+		}
+		if (watchRequestFactory instanceof DisposableBean && watchRequestFactory != requestFactory) {
+			((DisposableBean) watchRequestFactory).destroy();
+		}
 	}
 
 	/**
 	 * Updates the locations of the etcd cluster members.
+	 * 
+	 * @return <code>true</code> if all members were reached and neither the
+	 *         members nor the leader changed
 	 */
-	private void updateMembers() {
+	private boolean updateMembers() {
+		long startTime = System.currentTimeMillis();
+		Map<String, Long> latencies = new LinkedHashMap<>();
+		String error = null;
 		try {
-			List<String> locations = new ArrayList<String>();
+			EtcdRoutingTable previous = this.routing;
+			String previousLeader = leader;
+			boolean stable = true;
 
 			EtcdMemberResponse response = listMembers();
-			EtcdMember[] members = response.getMembers();
-
-			for (EtcdMember member : members) {
-				String[] clientUrls = member.getClientURLs();
-				if (clientUrls != null) {
-					for (String clientUrl : clientUrls) {
-						try {
-							String version = template.getForObject(clientUrl + "/version", String.class);
-							if (version == null) {
-								locations.add(clientUrl);
-							}
-						} catch (RestClientException e) {
-							log.debug("ignoring URI " + clientUrl + " because of error.", e);
-						}
+			Set<String> clientUrls = clientUrls(response.getMembers());
+			latencies = probe(clientUrls, probeTimeout);
+
+			if (!latencies.isEmpty()) {
+				// members that missed the probe stay routable, but are reported as failed
+				setLocations(clientUrls.toArray(new String[clientUrls.size()]));
+
+				// rank the members by the measured round-trip times right away
+				EtcdRoutingTable routing = this.routing;
+				stable = routing == previous && latencies.size() == clientUrls.size();
+				for (int i = 0; i < routing.size(); i++) {
+					Long latency = latencies.get(routing.location(i));
+					if (latency != null) {
+						success(routing, i, latency);
+					} else {
+						failure(routing, i);
 					}
 				}
-			}
-
-			if (!locations.isEmpty()) {
-				this.locations = locations.toArray(new String[locations.size()]);
 			} else {
 				log.debug("not updating locations because no location is found");
+				error = "No member answered within " + probeTimeout + " ms.";
+				stable = false;
+			}
+
+			if (leaderRoutingEnabled) {
+				try {
+					String discovered = discoverLeader(response);
+					stable &= discovered != null && discovered.equals(previousLeader);
+				} catch (RestClientException e) {
+					log.debug("Could not discover the leader of the etcd cluster.", e);
+					stable = false;
+				}
 			}
+			return stable;
 		} catch (EtcdException e) {
 			log.error("Could not update etcd cluster member.", e);
+			error = e.toString();
+			return false;
+		} catch (RuntimeException e) {
+			error = e.toString();
+			throw e;
+		} finally {
+			lastMemberUpdate = new MemberUpdate(startTime, System.currentTimeMillis() - startTime, latencies, error);
 		}
 	}
 
 	/**
-	 * Executes the given method on the given location using the given request
-	 * data.
+	 * Probes the given locations in parallel. Probes that do not answer
+	 * within the timeout, counted from the start of the first probe, are
+	 * abandoned.
 	 * 
-	 * @param uri
-	 *            the location
-	 * @param method
-	 *            the HTTP method
-	 * @param requestData
-	 *            the request data
-	 * @return the etcd response
-	 * @throws EtcdException
-	 *             in case etcd returned an error
+	 * @param locations
+	 *            the locations
+	 * @param timeout
+	 *            the timeout in milliseconds
+	 * @return the round-trip times in nanoseconds of the locations that
+	 *         answered in time, in the order of the given locations
 	 */
-	private <T> T execute(UriComponentsBuilder uriTemplate, HttpMethod method,
-			MultiValueMap<String, String> requestData, Class<T> responseType) throws EtcdException {
-		long startTimeMillis = System.currentTimeMillis();
-		int retry = -1;
-
-		ResourceAccessException lastException = null;
-		do {
-			lastException = null;
+	private Map<String, Long> probe(Collection<String> locations, long timeout) {
+		Map<String, Future<Long>> probes = new LinkedHashMap<>();
+		for (String location : locations) {
+			final String uri = location + (location.endsWith("/") ? "version" : "/version");
+			probes.put(location, probeExecutor.submit(new Callable<Long>() {
 
-			URI uri = uriTemplate.buildAndExpand(locations[locationIndex]).toUri();
-
-			RequestEntity<MultiValueMap<String, String>> requestEntity = new RequestEntity<>(requestData, null, method,
-					uri);
+				@Override
+				public Long call() throws Exception {
+					long startTime = System.nanoTime();
+					template.execute(uri, HttpMethod.GET, null, probeExtractor);
+					return System.nanoTime() - startTime;
+				}
+			}));
+		}
 
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		Map<String, Long> latencies = new LinkedHashMap<>();
+		for (Map.Entry<String, Future<Long>> probe : probes.entrySet()) {
 			try {
-				ResponseEntity<T> responseEntity = template.exchange(requestEntity, responseType);
-				return responseEntity.getBody();
-			} catch (HttpStatusCodeException e) {
-				EtcdError error = null;
+				latencies.put(probe.getKey(), probe.getValue().get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+			} catch (TimeoutException e) {
+				log.debug("ignoring URI " + probe.getKey() + " because it did not answer within " + timeout + " ms.");
+			} catch (ExecutionException e) {
+				log.debug("ignoring URI " + probe.getKey() + " because of error.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} finally {
+				probe.getValue().cancel(true);
+			}
+		}
+		return latencies;
+	}
+
+	/**
+	 * Opens connections to all members in parallel and reports their
+	 * round-trip times to the member selector, so the first requests go to
+	 * the fastest member over an established connection. Members that do not
+	 * answer within the warm-up timeout are reported as failed.
+	 */
+	private void warmUp() {
+		long startTime = System.currentTimeMillis();
+		EtcdRoutingTable routing = this.routing;
+		Map<String, Long> latencies = probe(Arrays.asList(routing.locations()), warmUpTimeout);
+
+		for (int i = 0; i < routing.size(); i++) {
+			Long latency = latencies.get(routing.location(i));
+			if (latency != null) {
+				success(routing, i, latency);
+			} else {
+				failure(routing, i);
+			}
+		}
+		log.info("Warmed up " + latencies.size() + " of " + routing.size() + " etcd cluster members in "
+				+ (System.currentTimeMillis() - startTime) + " ms.");
+	}
+
+	/**
+	 * @param members
+	 *            the members
+	 * @return the distinct client URLs of the given members
+	 */
+	private static Set<String> clientUrls(EtcdMember[] members) {
+		Set<String> clientUrls = new LinkedHashSet<>();
+		for (EtcdMember member : members) {
+			if (member.getClientURLs() != null) {
+				clientUrls.addAll(Arrays.asList(member.getClientURLs()));
+			}
+		}
+		return clientUrls;
+	}
+
+	/**
+	 * Returns the status of the etcd cluster as observed by this client. The
+	 * status is assembled from the statistics of past requests and the result
+	 * of the last membership update, so no request is sent to etcd.
+	 * 
+	 * @return the cluster status
+	 */
+	public EtcdClusterStatus getClusterStatus() {
+		EtcdRoutingTable routing = this.routing;
+		MemberUpdate update = lastMemberUpdate;
+		String leader = this.leader;
+
+		List<EtcdMemberStatus> members = new ArrayList<>(routing.size());
+		for (int i = 0; i < routing.size(); i++) {
+			String location = routing.location(i);
+			EtcdMemberStatistics statistics = routing.statistics(i);
+			State state = AbstractEtcdMemberSelector.getState(routing.state(i));
+			Long probeLatency = update == null ? null : update.latencies.get(location);
+
+			members.add(new EtcdMemberStatus(location, location.equals(leader), state,
+					millis(statistics.getLatency()), nullIfNaN(statistics.getErrorRate()), statistics.getRequests(),
+					statistics.getFailures(), probeLatency == null ? null : millis(probeLatency)));
+		}
+
+		return new EtcdClusterStatus(members, leader, update == null ? null : new Date(update.time),
+				update == null ? 0 : update.duration, update == null ? null : update.error,
+				locationUpdaterEnabled ? currentUpdateInterval : 0);
+	}
+
+	/**
+	 * @return the given nanoseconds in milliseconds or <code>null</code> if
+	 *         not a number
+	 */
+	private static Double millis(double nanos) {
+		return Double.isNaN(nanos) ? null : nanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * @return the given value or <code>null</code> if not a number
+	 */
+	private static Double nullIfNaN(double value) {
+		return Double.isNaN(value) ? null : value;
+	}
+
+	/**
+	 * @return the number of reads that were served by an identical read
+	 *         already in flight
+	 */
+	public long getCoalescedReadCount() {
+		return coalescedReads.sum();
+	}
+
+	/**
+	 * Sets the percentile of the observed read latency used as hedge delay.
+	 * 
+	 * @param hedgePercentile
+	 *            the percentile between 0 and 1, or 0 to always use the fixed
+	 *            hedge delay
+	 */
+	public void setHedgePercentile(double hedgePercentile) {
+		if (hedgePercentile > 0) {
+			readLatencies.setPercentile(hedgePercentile);
+		}
+		this.hedgePercentile = hedgePercentile;
+	}
+
+	/**
+	 * @return the number of reads that were sent to a second member because
+	 *         the first one did not answer within the hedge delay
+	 */
+	public long getHedgedReadCount() {
+		return hedgedReads.sum();
+	}
+
+	/**
+	 * Prevents reads started so far from being shared with later callers, e.g.
+	 * because the read nodes were changed in the meantime.
+	 */
+	void advanceReadGeneration() {
+		readGeneration.incrementAndGet();
+	}
+
+	/**
+	 * @return the routing table of the current members
+	 */
+	EtcdRoutingTable getRoutingTable() {
+		return routing;
+	}
+
+	/**
+	 * @return the base URI of the current leader or <code>null</code> if
+	 *         unknown
+	 */
+	String getLeaderBase() {
+		return leaderBase;
+	}
+
+	/**
+	 * @return the extractor for responses of key space requests
+	 */
+	ResponseExtractor<EtcdResponse> getResponseExtractor() {
+		return responseExtractor;
+	}
+
+	/**
+	 * @return the extractor for responses of member space requests
+	 */
+	ResponseExtractor<EtcdMemberResponse> getMemberResponseExtractor() {
+		return memberResponseExtractor;
+	}
+
+	/**
+	 * Executes the given read. Concurrent callers reading the same target share
+	 * a single request, unless a write happened after the request started.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private EtcdResponse executeRead(String key, String target) throws EtcdException {
+		return executeRead(key, target, null);
+	}
+
+	/**
+	 * Executes the given read. Concurrent callers reading the same target share
+	 * a single request, unless a write happened after the request started.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @param spread
+	 *            the cursor spreading the reads of a batch over the healthy
+	 *            members or <code>null</code> to use the member selector
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private EtcdResponse executeRead(String key, String target, AtomicInteger spread) throws EtcdException {
+		if (!readCoalescingEnabled) {
+			return executeGet(key, target, spread);
+		}
+
+		Read read = new Read(readGeneration.get());
+		Read inFlight = reads.putIfAbsent(target, read);
+		if (inFlight != null) {
+			if (inFlight.generation == read.generation) {
+				coalescedReads.increment();
+				return inFlight.await();
+			}
+			return executeGet(key, target, spread);
+		}
+
+		try {
+			EtcdResponse response = executeGet(key, target, spread);
+			read.complete(response);
+			return response;
+		} catch (EtcdException | RuntimeException e) {
+			read.completeExceptionally(e);
+			throw e;
+		} finally {
+			reads.remove(target, read);
+		}
+	}
+
+	/**
+	 * Executes the given read, hedged if enabled and the read is not spread.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @param spread
+	 *            the cursor spreading the reads of a batch over the healthy
+	 *            members or <code>null</code> to use the member selector
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private EtcdResponse executeGet(String key, String target, AtomicInteger spread) throws EtcdException {
+		if (spread != null) {
+			return execute("get", intercept("get", key, HttpMethod.GET), 0, spread, target, HttpMethod.GET, null,
+					responseExtractor);
+		}
+		if (hedgingEnabled) {
+			return executeHedged(key, target);
+		}
+		return execute("get", key, target, HttpMethod.GET, null, responseExtractor);
+	}
+
+	/**
+	 * Parses the node the given parser is positioned at and calls the given
+	 * visitor for the node if it is a leaf or for its descendant leaf nodes
+	 * otherwise.
+	 * 
+	 * @param parser
+	 *            the parser positioned at the start of the node object
+	 * @param visitor
+	 *            the visitor
+	 * @param visited
+	 *            the number of visited nodes
+	 * @throws IOException
+	 *             in case the node cannot be parsed
+	 */
+	private static void visitNode(JsonParser parser, EtcdVisitor visitor, AtomicInteger visited) throws IOException {
+		EtcdNode node = new EtcdNode();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.VALUE_NULL) {
+				continue;
+			}
+
+			switch (field) {
+			case "key":
+				node.setKey(parser.getText());
+				break;
+			case "value":
+				node.setValue(parser.getText());
+				break;
+			case "dir":
+				node.setDir(parser.getBooleanValue());
+				break;
+			case "createdIndex":
+				node.setCreatedIndex(parser.getIntValue());
+				break;
+			case "modifiedIndex":
+				node.setModifiedIndex(parser.getIntValue());
+				break;
+			case "ttl":
+				node.setTtl(parser.getLongValue());
+				break;
+			case "expiration":
+				node.setExpiration(parser.readValueAs(Date.class));
+				break;
+			case "nodes":
+				if (token != JsonToken.START_ARRAY) {
+					parser.skipChildren();
+					break;
+				}
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					visitNode(parser, visitor, visited);
+				}
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		if (!node.isDir()) {
+			visitor.visit(node);
+			visited.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Reads the node with the given key through the leader.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private EtcdResponse readQuorum(String key) throws EtcdException {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.param(target, "quorum", true);
+
+		return executeRead(key, target.toString());
+	}
+
+	/**
+	 * Waits for the given tasks to finish.
+	 * 
+	 * @param tasks
+	 *            the tasks
+	 */
+	private static void awaitAll(List<Future<?>> tasks) {
+		boolean interrupted = false;
+		for (Future<?> task : tasks) {
+			while (true) {
 				try {
-					error = responseConverter.getObjectMapper().readValue(e.getResponseBodyAsByteArray(),
-							EtcdError.class);
-				} catch (IOException ex) {
-					error = null;
+					task.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					log.error("Batch read failed unexpectedly.", e.getCause());
+					break;
 				}
-				throw new EtcdException(error, "Failed to execute " + requestEntity + ".", e);
-			} catch (ResourceAccessException e) {
-				log.debug("Failed to execute " + requestEntity + ", retrying if possible.", e);
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Executes the given method on the current location using the given form
+	 * encoded request body.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param key
+	 *            the node's key or <code>null</code> if the operation does not
+	 *            address a node
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @param method
+	 *            the HTTP method
+	 * @param body
+	 *            the form encoded request body or <code>null</code>
+	 * @param responseExtractor
+	 *            the extractor for the response
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private <T> T execute(String operation, String key, String target, HttpMethod method, byte[] body,
+			ResponseExtractor<T> responseExtractor) throws EtcdException {
+		return execute(operation, intercept(operation, key, method), 0, null, target, method, body,
+				responseExtractor);
+	}
+
+	/**
+	 * Executes the given method on the current location using the given form
+	 * encoded request body, continuing the given intercepted operation.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param invocation
+	 *            the invocation passed to the interceptors or
+	 *            <code>null</code> if no interceptor is registered
+	 * @param attempts
+	 *            the number of attempts of the operation so far
+	 * @param spread
+	 *            the cursor spreading the first attempts of a batch over the
+	 *            healthy members or <code>null</code> to use the member
+	 *            selector
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @param method
+	 *            the HTTP method
+	 * @param body
+	 *            the form encoded request body or <code>null</code>
+	 * @param responseExtractor
+	 *            the extractor for the response
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private <T> T execute(String operation, EtcdInvocation invocation, int attempts, AtomicInteger spread,
+			String target, HttpMethod method, byte[] body, ResponseExtractor<T> responseExtractor)
+			throws EtcdException {
+		if (method != HttpMethod.GET) {
+			advanceReadGeneration();
+		}
+
+		long startTime = System.nanoTime();
+		long startTimeMillis = System.currentTimeMillis();
+		int retry = 0;
+		URI failed = null;
+		Exception error = null;
 
-				if (locationIndex == locations.length - 1) {
-					locationIndex = 0;
-				} else {
-					locationIndex++;
+		try {
+			while (true) {
+				// mutating requests go to the leader directly if it is known
+				String leaderBase = method != HttpMethod.GET ? this.leaderBase : null;
+				EtcdRoutingTable routing = this.routing;
+				int member = -1;
+				if (leaderBase == null) {
+					member = spread != null && retry == 0 ? spreadMember(routing, spread) : selectMember(routing);
+				}
+				URI uri = leaderBase == null ? routing.uri(member, target) : EtcdUris.uri(leaderBase, target);
+				if (failed != null && !uri.getAuthority().equals(failed.getAuthority())) {
+					metrics.failover(operation);
+				}
+
+				attempts++;
+				try {
+					T response = attempt(operation, invocation, attempts, routing, member, uri, method, body,
+							responseExtractor);
+					metrics.operation(operation, Outcome.SUCCESS, System.nanoTime() - startTime);
+					return response;
+				} catch (EtcdException e) {
+					metrics.operation(operation, Outcome.HTTP_ERROR, System.nanoTime() - startTime);
+					throw e;
+				} catch (ResourceAccessException e) {
+					log.debug("Failed to execute " + method + " " + uri + ", retrying if possible.", e);
+
+					if (member < 0) {
+						invalidateLeader();
+					}
+
+					retry++;
+					// a partially consumed response cannot be taken back
+					if (e instanceof PartialResponseException || !awaitRetry(retry, startTimeMillis)) {
+						metrics.operation(operation, Outcome.IO_ERROR, System.nanoTime() - startTime);
+						throw e;
+					}
+					metrics.retry(operation);
+					failed = uri;
 				}
-				lastException = e;
 			}
-		} while (retry <= retryCount && System.currentTimeMillis() - startTimeMillis < retryDuration);
+		} catch (EtcdException | RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			if (invocation != null) {
+				invocation.afterOperation(attempts, error);
+			}
+		}
+	}
+
+	/**
+	 * Executes a single attempt of the given method on the given member and
+	 * reports the outcome to the member selector, the metrics and the
+	 * interceptors.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param invocation
+	 *            the invocation passed to the interceptors or
+	 *            <code>null</code> if no interceptor is registered
+	 * @param attempt
+	 *            the number of the attempt, starting with <code>1</code>
+	 * @param routing
+	 *            the routing table the member was selected from
+	 * @param member
+	 *            the index of the member or <code>-1</code> if the request is
+	 *            sent to the leader
+	 * @param uri
+	 *            the URI
+	 * @param method
+	 *            the HTTP method
+	 * @param body
+	 *            the form encoded request body or <code>null</code>
+	 * @param responseExtractor
+	 *            the extractor for the response
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private <T> T attempt(String operation, EtcdInvocation invocation, int attempt, EtcdRoutingTable routing,
+			int member, URI uri, HttpMethod method, byte[] body, ResponseExtractor<T> responseExtractor)
+			throws EtcdException {
+		HttpHeaders headers = invocation == null ? null : invocation.beforeAttempt(attempt, uri.getAuthority());
+		ResponseExtractor<T> extractor = responseExtractor;
+		FirstByteResponseExtractor<T> firstByte = null;
+		if ("visit".equals(operation)) {
+			// the visitor sets the pace of a listing, so only the time to the response is the member's latency
+			firstByte = new FirstByteResponseExtractor<>(responseExtractor);
+			extractor = firstByte;
+		}
+
+		long startTime = System.nanoTime();
+		Exception error = null;
+		try {
+			T response = template.execute(uri, method,
+					body == null && headers == null ? null : new FormRequestCallback(body, headers), extractor);
+			long latency = System.nanoTime() - startTime;
+			reportSuccess(operation, routing, member, uri, latency,
+					firstByte == null ? latency : firstByte.responseTime - startTime);
+			return response;
+		} catch (HttpStatusCodeException e) {
+			EtcdException exception = reportHttpError(operation, routing, member, uri, method, e,
+					System.nanoTime() - startTime);
+			error = exception;
+			throw exception;
+		} catch (ResourceAccessException e) {
+			reportIoError(operation, routing, member, uri, System.nanoTime() - startTime);
+			error = e;
+			throw e;
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			if (invocation != null) {
+				invocation.afterAttempt(attempt, uri.getAuthority(), System.nanoTime() - startTime, error);
+			}
+		}
+	}
+
+	/**
+	 * Reports a successful attempt to the member selector, the retry budget and
+	 * the metrics.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param routing
+	 *            the routing table the member was selected from
+	 * @param member
+	 *            the index of the member or <code>-1</code> for the leader
+	 * @param uri
+	 *            the URI
+	 * @param latency
+	 *            the latency of the attempt in nanoseconds
+	 * @param memberLatency
+	 *            the part of the latency caused by the member in nanoseconds
+	 */
+	void reportSuccess(String operation, EtcdRoutingTable routing, int member, URI uri, long latency,
+			long memberLatency) {
+		success(routing, member, memberLatency);
+		if ("get".equals(operation)) {
+			readLatencies.record(latency);
+		}
+		depositRetryBudget();
+		metrics.request(operation, uri.getAuthority(), Outcome.SUCCESS, 0, latency);
+	}
 
-		if (lastException != null) {
-			throw lastException;
+	/**
+	 * Reports an attempt answered with an error status to the member
+	 * selector, the retry budget and the metrics.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param routing
+	 *            the routing table the member was selected from
+	 * @param member
+	 *            the index of the member or <code>-1</code> for the leader
+	 * @param uri
+	 *            the URI
+	 * @param method
+	 *            the HTTP method
+	 * @param e
+	 *            the exception
+	 * @param latency
+	 *            the latency of the attempt in nanoseconds
+	 * @return the exception to throw
+	 */
+	EtcdException reportHttpError(String operation, EtcdRoutingTable routing, int member, URI uri,
+			HttpMethod method, HttpStatusCodeException e, long latency) {
+		if (e.getStatusCode().is5xxServerError()) {
+			// the member answered, but cannot serve requests
+			failure(routing, member);
 		} else {
+			success(routing, member, latency);
+			depositRetryBudget();
+		}
+		observeTerm(e.getResponseHeaders());
+		EtcdError etcdError = readError(e);
+		int errorCode = etcdError == null ? 0 : etcdError.getErrorCode();
+		metrics.request(operation, uri.getAuthority(), Outcome.HTTP_ERROR, errorCode, latency);
+		return new EtcdException(etcdError, "Failed to execute " + method + " " + uri + ".", e);
+	}
+
+	/**
+	 * Reports an attempt failed with an I/O error to the member selector and
+	 * the metrics.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param routing
+	 *            the routing table the member was selected from
+	 * @param member
+	 *            the index of the member or <code>-1</code> for the leader
+	 * @param uri
+	 *            the URI
+	 * @param latency
+	 *            the latency of the attempt in nanoseconds
+	 */
+	void reportIoError(String operation, EtcdRoutingTable routing, int member, URI uri, long latency) {
+		failure(routing, member);
+		metrics.request(operation, uri.getAuthority(), Outcome.IO_ERROR, 0, latency);
+	}
+
+	/**
+	 * Notifies the interceptors that the given operation starts.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param key
+	 *            the node's key or <code>null</code>
+	 * @param method
+	 *            the HTTP method
+	 * @return the invocation passed to the interceptors or <code>null</code>
+	 *         if no interceptor is registered
+	 */
+	EtcdInvocation intercept(String operation, String key, HttpMethod method) {
+		EtcdClientInterceptor[] interceptors = this.interceptors;
+		if (interceptors.length == 0) {
+			return null;
+		}
+
+		EtcdInvocation invocation = new EtcdInvocation(operation, key, method, interceptors);
+		invocation.beforeOperation();
+		return invocation;
+	}
+
+	/**
+	 * Executes the given read on the selected member and sends the same read
+	 * to a second member if the first one did not answer within the hedge
+	 * delay. The first answer wins and the result of the other request is
+	 * discarded. Falls back to the regular retries if neither member could be
+	 * reached, and to a read without hedging if all hedge threads are busy.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private EtcdResponse executeHedged(String key, String target) throws EtcdException {
+		EtcdRoutingTable routing = this.routing;
+		int members = routing.size();
+		if (members < 2) {
+			return execute("get", key, target, HttpMethod.GET, null, responseExtractor);
+		}
+
+		EtcdInvocation invocation = intercept("get", key, HttpMethod.GET);
+		long startTime = System.nanoTime();
+		final CompletableFuture<EtcdResponse> result = new CompletableFuture<>();
+		final AtomicInteger pending = new AtomicInteger(1);
+		int attempts = 1;
+		int first = selectMember(routing);
+		Future<?> primary = submitHedged(new HedgedRead(invocation, attempts, routing, first, target, result, pending));
+		if (primary == null) {
+			// the regular retries complete the intercepted operation
+			return execute("get", invocation, 0, null, target, HttpMethod.GET, null, responseExtractor);
+		}
+		Future<?> hedge = null;
+		Exception error = null;
+		boolean completed = true;
+		try {
+			try {
+				EtcdResponse response = awaitHedged(result, effectiveHedgeDelay());
+				metrics.operation("get", Outcome.SUCCESS, System.nanoTime() - startTime);
+				return response;
+			} catch (TimeoutException e) {
+				// only hedge to a member whose circuit breaker is closed
+				int second = memberSelector.select(routing.states(), first);
+				if (second >= 0) {
+					pending.incrementAndGet();
+					hedge = submitHedged(
+							new HedgedRead(invocation, attempts + 1, routing, second, target, result, pending));
+					if (hedge != null) {
+						hedgedReads.increment();
+						attempts++;
+					} else if (pending.decrementAndGet() == 0) {
+						// the primary read failed in the meantime
+						throw new ResourceAccessException("Failed to execute hedged GET " + target + ".");
+					}
+				}
+			}
+
+			EtcdResponse response = awaitHedged(result, -1);
+			metrics.operation("get", Outcome.SUCCESS, System.nanoTime() - startTime);
+			return response;
+		} catch (EtcdException e) {
+			metrics.operation("get", Outcome.HTTP_ERROR, System.nanoTime() - startTime);
+			error = e;
+			throw e;
+		} catch (TimeoutException | ResourceAccessException e) {
+			log.debug("Failed to execute hedged GET " + target + ", retrying if possible.", e);
+			// the regular retries complete the intercepted operation
+			completed = false;
+			return execute("get", invocation, attempts, null, target, HttpMethod.GET, null, responseExtractor);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			// not a real cancel: the interrupt aborts neither a blocking socket
+			// read nor the request at the member, so the losing read occupies
+			// its hedge thread until its response or the read timeout
+			primary.cancel(true);
+			if (hedge != null) {
+				hedge.cancel(true);
+			}
+			if (invocation != null && completed) {
+				invocation.afterOperation(attempts, error);
+			}
+		}
+	}
+
+	/**
+	 * Submits the given hedged read unless all threads of the hedge executor
+	 * are busy.
+	 * 
+	 * @param read
+	 *            the hedged read
+	 * @return the future of the read or <code>null</code> if it was rejected
+	 */
+	private Future<?> submitHedged(HedgedRead read) {
+		try {
+			return hedgeExecutor.submit(read);
+		} catch (RejectedExecutionException e) {
+			log.debug("Not hedging the read because all hedge threads are busy.");
+			return null;
+		}
+	}
+
+	/**
+	 * Waits for the result of a hedged read.
+	 * 
+	 * @param result
+	 *            the result
+	 * @param timeout
+	 *            the timeout in milliseconds or <code>-1</code> to wait until
+	 *            the read completes
+	 * @return the etcd response
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 * @throws TimeoutException
+	 *             in case the read did not complete in time
+	 */
+	private static EtcdResponse awaitHedged(CompletableFuture<EtcdResponse> result, long timeout)
+			throws EtcdException, TimeoutException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return timeout < 0 ? result.get() : result.get(timeout, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof EtcdException) {
+						throw (EtcdException) e.getCause();
+					} else if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return the delay in milliseconds before a read is hedged
+	 */
+	private long effectiveHedgeDelay() {
+		long percentile = hedgePercentile > 0 ? readLatencies.getPercentile() : -1;
+		return percentile < 0 ? hedgeDelay : Math.max(1, TimeUnit.NANOSECONDS.toMillis(percentile));
+	}
+
+	/**
+	 * Waits before the given retry if the retry is allowed.
+	 * 
+	 * @param retry
+	 *            the number of the retry, starting with <code>1</code>
+	 * @param startTimeMillis
+	 *            the start time of the first attempt
+	 * @return <code>true</code> if the request should be retried,
+	 *         <code>false</code> otherwise
+	 */
+	private boolean awaitRetry(int retry, long startTimeMillis) {
+		long delay = retryDelay(retry, startTimeMillis, retryCount, retryDuration, retryPolicy, retryBudget);
+		if (delay < 0) {
+			return false;
+		}
+
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the delay before the given retry if the retry is allowed and
+	 * withdraws the retry from the retry budget.
+	 * 
+	 * @param retry
+	 *            the number of the retry, starting with <code>1</code>
+	 * @param startTimeMillis
+	 *            the start time of the first attempt
+	 * @param retryCount
+	 *            the maximum number of retries or <code>0</code> to retry until
+	 *            the retry duration elapsed
+	 * @param retryDuration
+	 *            the maximum duration of retries in milliseconds
+	 * @param retryPolicy
+	 *            the policy deciding the delay before a retry
+	 * @param retryBudget
+	 *            the retry budget or <code>null</code> for unlimited retries
+	 * @return the delay in milliseconds or <code>-1</code> if the request
+	 *         should not be retried
+	 */
+	static long retryDelay(int retry, long startTimeMillis, int retryCount, int retryDuration,
+			EtcdRetryPolicy retryPolicy, EtcdRetryBudget retryBudget) {
+		// without a retry count, only the retry duration limits the retries
+		if (retryCount > 0 && retry > retryCount) {
+			return -1;
+		}
+
+		long delay = retryPolicy.getDelay(retry);
+		if (delay < 0 || System.currentTimeMillis() + delay - startTimeMillis >= retryDuration) {
+			return -1;
+		}
+
+		if (retryBudget != null && !retryBudget.tryWithdraw()) {
+			log.debug("Not retrying because the retry budget is exhausted.");
+			return -1;
+		}
+		return delay;
+	}
+
+	/**
+	 * Deposits a successful request into the retry budget.
+	 */
+	private void depositRetryBudget() {
+		EtcdRetryBudget retryBudget = this.retryBudget;
+		if (retryBudget != null) {
+			retryBudget.deposit();
+		}
+	}
+
+	/**
+	 * Executes the given long-polling watch request on the current location.
+	 * Other than regular requests, watch requests are not retried because the
+	 * caller is going to issue the next watch request anyway.
+	 * 
+	 * @param target
+	 *            the watch request target relative to the base URI
+	 * @return the etcd response or <code>null</code> if the watch timed out
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private EtcdResponse executeWatch(String target) throws EtcdException {
+		EtcdRoutingTable routing = this.routing;
+		int member = selectMember(routing);
+		URI uri = routing.uri(member, target);
+
+		try {
+			return watchTemplate.execute(uri, HttpMethod.GET, null, responseExtractor);
+		} catch (HttpStatusCodeException e) {
+			throw new EtcdException(readError(e), "Failed to execute GET " + uri + ".", e);
+		} catch (ResourceAccessException e) {
+			if (isReadTimeout(e)) {
+				return null;
+			}
+
+			log.debug("Failed to execute GET " + uri + ".", e);
+			failure(routing, member);
+			throw e;
+		}
+	}
+
+	/**
+	 * Selects the member the next request is sent to.
+	 * 
+	 * @param routing
+	 *            the routing table to select from
+	 * @return the index of the member
+	 * @throws EtcdException
+	 *             in case no member is known
+	 */
+	int selectMember(EtcdRoutingTable routing) throws EtcdException {
+		if (routing.size() == 0) {
+			throw new EtcdException(null, "No etcd cluster member is known.");
+		}
+
+		int member = memberSelector.select(routing.states(), -1);
+		String location = routing.location(member);
+		if (location != currentLocation) {
+			// avoid contended writes while the selection is stable
+			currentLocation = location;
+		}
+		return member;
+	}
+
+	/**
+	 * Selects the next member whose circuit breaker is closed in turn, so the
+	 * reads of a batch are spread over the healthy members instead of all
+	 * going to the member preferred by the member selector.
+	 * 
+	 * @param routing
+	 *            the routing table
+	 * @param spread
+	 *            the cursor of the batch
+	 * @return the index of the selected member
+	 * @throws EtcdException
+	 *             in case no member is known
+	 */
+	private int spreadMember(EtcdRoutingTable routing, AtomicInteger spread) throws EtcdException {
+		EtcdMemberState[] members = routing.states();
+		int start = spread.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0; i < members.length; i++) {
+			int member = (start + i) % members.length;
+			if (members[member].isHealthy()) {
+				return member;
+			}
+		}
+		return selectMember(routing);
+	}
+
+	/**
+	 * Reports a successful call to the member selector.
+	 * 
+	 * @param routing
+	 *            the routing table the member was selected from
+	 * @param member
+	 *            the index of the member or <code>-1</code> for the leader
+	 * @param latency
+	 *            the latency in nanoseconds
+	 */
+	private void success(EtcdRoutingTable routing, int member, long latency) {
+		if (member >= 0) {
+			routing.statistics(member).success(latency);
+			memberSelector.success(routing.state(member), latency);
+		}
+	}
+
+	/**
+	 * Reports a failed call to the member selector.
+	 * 
+	 * @param routing
+	 *            the routing table the member was selected from
+	 * @param member
+	 *            the index of the member or <code>-1</code> for the leader
+	 */
+	private void failure(EtcdRoutingTable routing, int member) {
+		if (member >= 0) {
+			routing.statistics(member).failure();
+			memberSelector.failure(routing.state(member));
+		}
+		accelerateMemberUpdate();
+	}
+
+	/**
+	 * Reads the etcd error from the body of the given exception.
+	 * 
+	 * @param e
+	 *            the exception
+	 * @return the etcd error or <code>null</code> if the body does not contain
+	 *         an etcd error
+	 */
+	private EtcdError readError(HttpStatusCodeException e) {
+		try {
+			return responseConverter.getObjectMapper().readValue(e.getResponseBodyAsByteArray(), EtcdError.class);
+		} catch (IOException ex) {
 			return null;
 		}
 	}
+
+	/**
+	 * Checks whether the given exception was caused by a read timeout.
+	 * 
+	 * @param e
+	 *            the exception
+	 * @return <code>true</code> if the read timed out, <code>false</code>
+	 *         otherwise
+	 */
+	private static boolean isReadTimeout(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SocketTimeoutException) {
+				String message = cause.getMessage();
+				return message == null || !message.toLowerCase().startsWith("connect");
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Result of an update of the locations.
+	 */
+	private static class MemberUpdate {
+
+		/**
+		 * start of the update in milliseconds since the epoch
+		 */
+		private final long time;
+
+		/**
+		 * duration of the update in milliseconds
+		 */
+		private final long duration;
+
+		/**
+		 * round-trip times in nanoseconds of the members that answered the
+		 * probe
+		 */
+		private final Map<String, Long> latencies;
+
+		/**
+		 * error or <code>null</code> if the update succeeded
+		 */
+		private final String error;
+
+		MemberUpdate(long time, long duration, Map<String, Long> latencies, String error) {
+			this.time = time;
+			this.duration = duration;
+			this.latencies = latencies;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * A read in flight shared by concurrent callers.
+	 */
+	private static class Read extends CompletableFuture<EtcdResponse> {
+
+		/**
+		 * read generation when the request started
+		 */
+		private final long generation;
+
+		Read(long generation) {
+			this.generation = generation;
+		}
+
+		/**
+		 * Waits for the read to complete.
+		 * 
+		 * @return the etcd response
+		 * @throws EtcdException
+		 *             in case etcd returned an error
+		 */
+		EtcdResponse await() throws EtcdException {
+			try {
+				return join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof EtcdException) {
+					throw (EtcdException) e.getCause();
+				} else if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * A single attempt of a hedged read. Completes the shared result with the
+	 * first answer, but with a connection failure only if no other attempt is
+	 * pending.
+	 */
+	private class HedgedRead implements Runnable {
+
+		/**
+		 * invocation passed to the interceptors or <code>null</code>
+		 */
+		private final EtcdInvocation invocation;
+
+		/**
+		 * number of the attempt
+		 */
+		private final int attempt;
+
+		/**
+		 * routing table the member was selected from
+		 */
+		private final EtcdRoutingTable routing;
+
+		/**
+		 * index of the member
+		 */
+		private final int member;
+
+		/**
+		 * request target relative to the base URI
+		 */
+		private final String target;
+
+		/**
+		 * shared result
+		 */
+		private final CompletableFuture<EtcdResponse> result;
+
+		/**
+		 * number of attempts pending
+		 */
+		private final AtomicInteger pending;
+
+		HedgedRead(EtcdInvocation invocation, int attempt, EtcdRoutingTable routing, int member, String target,
+				CompletableFuture<EtcdResponse> result, AtomicInteger pending) {
+			this.invocation = invocation;
+			this.attempt = attempt;
+			this.routing = routing;
+			this.member = member;
+			this.target = target;
+			this.result = result;
+			this.pending = pending;
+		}
+
+		@Override
+		public void run() {
+			try {
+				result.complete(attempt("get", invocation, attempt, routing, member, routing.uri(member, target),
+						HttpMethod.GET, null, responseExtractor));
+			} catch (ResourceAccessException e) {
+				if (pending.decrementAndGet() == 0) {
+					result.completeExceptionally(e);
+				}
+			} catch (EtcdException | RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Response extractor remembering when the response arrived, before the
+	 * delegate consumes its body.
+	 */
+	private static class FirstByteResponseExtractor<T> implements ResponseExtractor<T> {
+
+		/**
+		 * extractor consuming the response
+		 */
+		private final ResponseExtractor<T> delegate;
+
+		/**
+		 * time in nanoseconds the response arrived
+		 */
+		private long responseTime;
+
+		FirstByteResponseExtractor(ResponseExtractor<T> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public T extractData(ClientHttpResponse response) throws IOException {
+			responseTime = System.nanoTime();
+			return delegate.extractData(response);
+		}
+	}
+
+	/**
+	 * Exception thrown if a response failed after parts of it were already
+	 * passed to the caller, so the request must not be retried.
+	 */
+	private static class PartialResponseException extends ResourceAccessException {
+
+		private static final long serialVersionUID = 1L;
+
+		PartialResponseException(String msg, IOException ex) {
+			super(msg, ex);
+		}
+	}
+
+	/**
+	 * Adds the headers of the interceptors and writes a form encoded request
+	 * body.
+	 */
+	static class FormRequestCallback implements RequestCallback, AsyncRequestCallback {
+
+		/**
+		 * form encoded request body or <code>null</code>
+		 */
+		private final byte[] body;
+
+		/**
+		 * headers added by the interceptors or <code>null</code>
+		 */
+		private final HttpHeaders headers;
+
+		FormRequestCallback(byte[] body, HttpHeaders headers) {
+			this.body = body;
+			this.headers = headers;
+		}
+
+		@Override
+		public void doWithRequest(ClientHttpRequest request) throws IOException {
+			write(request);
+		}
+
+		@Override
+		public void doWithRequest(AsyncClientHttpRequest request) throws IOException {
+			write(request);
+		}
+
+		private void write(HttpOutputMessage request) throws IOException {
+			if (headers != null) {
+				request.getHeaders().putAll(headers);
+			}
+			if (body != null) {
+				request.getHeaders().setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+				request.getHeaders().setContentLength(body.length);
+				request.getBody().write(body);
+			}
+		}
+	}
+
+	/**
+	 * Reads a JSON response body with a reader prepared once for the response
+	 * type.
+	 */
+	private class JsonResponseExtractor<T> implements ResponseExtractor<T> {
+
+		/**
+		 * response type
+		 */
+		private final Class<T> responseType;
+
+		/**
+		 * reader for the response type
+		 */
+		private final ObjectReader reader;
+
+		JsonResponseExtractor(Class<T> responseType) {
+			this.responseType = responseType;
+			this.reader = responseConverter.getObjectMapper().readerFor(responseType);
+		}
+
+		@Override
+		public T extractData(ClientHttpResponse response) throws IOException {
+			observeTerm(response.getHeaders());
+			if (response.getHeaders().getContentLength() == 0) {
+				return null;
+			}
+
+			T result;
+			try {
+				result = reader.readValue(response.getBody());
+			} catch (JsonProcessingException e) {
+				// other I/O errors are retried
+				throw new RestClientException("Error while extracting response for type [" + responseType + "]", e);
+			}
+
+			if (result instanceof EtcdResponse) {
+				((EtcdResponse) result).setEtcdIndex(readEtcdIndex(response.getHeaders()));
+			}
+			return result;
+		}
+	}
 }
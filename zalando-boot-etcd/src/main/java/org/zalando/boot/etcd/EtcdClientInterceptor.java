@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Interceptor called around the operations of an {@link EtcdClient}, e.g. to
+ * attach trace context and record spans. An operation consists of one or
+ * more attempts, each sent to a single member. Attempts of a hedged read may
+ * run concurrently on different threads, but the callbacks of a single
+ * attempt run on the same thread. Watches are not intercepted.
+ * 
+ * @see EtcdClient#setInterceptors(java.util.List)
+ */
+public interface EtcdClientInterceptor {
+
+	/**
+	 * Called before the first attempt of an operation.
+	 * 
+	 * @param invocation
+	 *            the operation
+	 */
+	void beforeOperation(EtcdInvocation invocation);
+
+	/**
+	 * Called before an attempt is sent to a member.
+	 * 
+	 * @param invocation
+	 *            the operation
+	 * @param attempt
+	 *            the number of the attempt, starting with <code>1</code>
+	 * @param member
+	 *            the authority of the member
+	 * @param headers
+	 *            the headers added to the request
+	 */
+	void beforeAttempt(EtcdInvocation invocation, int attempt, String member, HttpHeaders headers);
+
+	/**
+	 * Called after an attempt completed.
+	 * 
+	 * @param invocation
+	 *            the operation
+	 * @param attempt
+	 *            the number of the attempt, starting with <code>1</code>
+	 * @param member
+	 *            the authority of the member
+	 * @param latency
+	 *            the latency of the attempt in nanoseconds
+	 * @param error
+	 *            the error or <code>null</code> if the member answered with
+	 *            success
+	 */
+	void afterAttempt(EtcdInvocation invocation, int attempt, String member, long latency, Exception error);
+
+	/**
+	 * Called after the last attempt of an operation.
+	 * 
+	 * @param invocation
+	 *            the operation
+	 * @param attempts
+	 *            the number of attempts
+	 * @param latency
+	 *            the latency of the operation including all attempts in
+	 *            nanoseconds
+	 * @param error
+	 *            the error or <code>null</code> if the operation succeeded
+	 */
+	void afterOperation(EtcdInvocation invocation, int attempts, long latency, Exception error);
+
+}
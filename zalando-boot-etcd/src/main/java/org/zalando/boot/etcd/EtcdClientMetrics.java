@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+/**
+ * Receives measurements of the requests of an {@link EtcdClient}. The client
+ * calls the metrics on the request threads, so implementations must be
+ * thread-safe and should not block.
+ * 
+ * @see EtcdClient#setMetrics(EtcdClientMetrics)
+ * @see EtcdMicrometerMetrics
+ */
+public interface EtcdClientMetrics {
+
+	/**
+	 * metrics discarding all measurements
+	 */
+	EtcdClientMetrics NONE = new EtcdClientMetrics() {
+
+		@Override
+		public void operation(String operation, Outcome outcome, long latency) {
+		}
+
+		@Override
+		public void request(String operation, String member, Outcome outcome, int errorCode, long latency) {
+		}
+
+		@Override
+		public void retry(String operation) {
+		}
+
+		@Override
+		public void failover(String operation) {
+		}
+
+		@Override
+		public void members(String[] locations) {
+		}
+	};
+
+	/**
+	 * Outcome of an operation or request.
+	 */
+	enum Outcome {
+
+		/**
+		 * etcd answered successfully
+		 */
+		SUCCESS,
+
+		/**
+		 * etcd answered with an error
+		 */
+		HTTP_ERROR,
+
+		/**
+		 * etcd could not be reached
+		 */
+		IO_ERROR
+	}
+
+	/**
+	 * Called when an operation completed, including all retries.
+	 * 
+	 * @param operation
+	 *            the operation, e.g. <code>get</code> or <code>cas</code>
+	 * @param outcome
+	 *            the outcome
+	 * @param latency
+	 *            the latency in nanoseconds
+	 */
+	void operation(String operation, Outcome outcome, long latency);
+
+	/**
+	 * Called when a single request to a member completed.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param member
+	 *            the location of the member
+	 * @param outcome
+	 *            the outcome
+	 * @param errorCode
+	 *            the etcd error code or <code>0</code> unless the outcome is
+	 *            {@link Outcome#HTTP_ERROR}
+	 * @param latency
+	 *            the latency in nanoseconds
+	 */
+	void request(String operation, String member, Outcome outcome, int errorCode, long latency);
+
+	/**
+	 * Called when a request is retried.
+	 * 
+	 * @param operation
+	 *            the operation
+	 */
+	void retry(String operation);
+
+	/**
+	 * Called when a retry is sent to another member than the failed request.
+	 * 
+	 * @param operation
+	 *            the operation
+	 */
+	void failover(String operation);
+
+	/**
+	 * Called when the metrics are set on the client and whenever the client's
+	 * locations changed afterwards.
+	 * 
+	 * @param locations
+	 *            the locations of the members
+	 */
+	void members(String[] locations);
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.Date;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Status of the etcd cluster as seen by the client, assembled from what the
+ * client observed without contacting etcd.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EtcdClusterStatus {
+
+	/**
+	 * members requests are routed to
+	 */
+	private List<EtcdMemberStatus> members;
+
+	/**
+	 * location of the current leader or <code>null</code> if the leader is
+	 * unknown
+	 */
+	private String leader;
+
+	/**
+	 * time of the last membership update or <code>null</code> if the members
+	 * were not updated yet
+	 */
+	private Date lastUpdate;
+
+	/**
+	 * duration of the last membership update in milliseconds
+	 */
+	private long lastUpdateDuration;
+
+	/**
+	 * error of the last membership update or <code>null</code> if it
+	 * succeeded
+	 */
+	private String lastUpdateError;
+
+	/**
+	 * current interval between membership updates in milliseconds
+	 */
+	private long updateInterval;
+
+}
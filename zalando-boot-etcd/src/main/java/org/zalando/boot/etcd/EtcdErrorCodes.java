@@ -66,6 +66,11 @@ public final class EtcdErrorCodes {
 	 */
 	public static final int ECODE_DIR_NOT_EMPTY = 108;
 
+	/**
+	 * error code the event in requested index is outdated and cleared.
+	 */
+	public static final int ECODE_EVENT_INDEX_CLEARED = 401;
+
 	/**
 	 * Creates a new EtcdErrorCodes. Hidden to prevent instantiation
 	 */
@@ -0,0 +1,48 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+/**
+ * Member selector sending requests to the healthy member with the lowest
+ * moving average of the latency. Members without a measured latency are
+ * preferred, so every member is tried at least once.
+ */
+public class EtcdEwmaMemberSelector extends AbstractEtcdMemberSelector {
+
+	@Override
+	protected int selectHealthy(EtcdMemberState[] members, int excluded) {
+		int selected = -1;
+		double lowest = Double.MAX_VALUE;
+		for (int i = 0; i < members.length; i++) {
+			if (isHealthy(members, i, excluded)) {
+				double latency = members[i].getLatency();
+				if (latency < lowest) {
+					selected = i;
+					lowest = latency;
+				}
+			}
+		}
+		return selected;
+	}
+}
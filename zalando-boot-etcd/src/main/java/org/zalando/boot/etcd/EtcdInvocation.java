@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+import lombok.Getter;
+
+/**
+ * A single operation of an {@link EtcdClient} passed to the
+ * {@link EtcdClientInterceptor interceptors}. Interceptors can keep state
+ * between their callbacks in the attributes of the invocation.
+ */
+public class EtcdInvocation {
+
+	/**
+	 * operation, e.g. <code>get</code>, <code>put</code> or <code>cas</code>
+	 */
+	@Getter
+	private final String operation;
+
+	/**
+	 * key of the node or <code>null</code> if the operation does not address
+	 * a node
+	 */
+	@Getter
+	private final String key;
+
+	/**
+	 * HTTP method
+	 */
+	@Getter
+	private final HttpMethod method;
+
+	/**
+	 * {@link System#nanoTime()} when the operation started
+	 */
+	private final long startTime = System.nanoTime();
+
+	/**
+	 * attributes of the interceptors
+	 */
+	private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+	/**
+	 * interceptors registered when the operation started
+	 */
+	private final EtcdClientInterceptor[] interceptors;
+
+	/**
+	 * Creates a new EtcdInvocation.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @param key
+	 *            the key of the node or <code>null</code>
+	 * @param method
+	 *            the HTTP method
+	 * @param interceptors
+	 *            the interceptors
+	 */
+	EtcdInvocation(String operation, String key, HttpMethod method, EtcdClientInterceptor[] interceptors) {
+		this.operation = operation;
+		this.key = key;
+		this.method = method;
+		this.interceptors = interceptors;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the attribute
+	 * @return the value of the attribute or <code>null</code> if not set
+	 */
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the attribute
+	 * @param value
+	 *            the value of the attribute or <code>null</code> to remove it
+	 */
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	/**
+	 * Notifies the interceptors that the operation starts.
+	 */
+	void beforeOperation() {
+		for (EtcdClientInterceptor interceptor : interceptors) {
+			interceptor.beforeOperation(this);
+		}
+	}
+
+	/**
+	 * Notifies the interceptors that an attempt is sent to the given member.
+	 * 
+	 * @param attempt
+	 *            the number of the attempt
+	 * @param member
+	 *            the authority of the member
+	 * @return the headers the interceptors added to the request
+	 */
+	HttpHeaders beforeAttempt(int attempt, String member) {
+		HttpHeaders headers = new HttpHeaders();
+		for (EtcdClientInterceptor interceptor : interceptors) {
+			interceptor.beforeAttempt(this, attempt, member, headers);
+		}
+		return headers;
+	}
+
+	/**
+	 * Notifies the interceptors that an attempt completed.
+	 * 
+	 * @param attempt
+	 *            the number of the attempt
+	 * @param member
+	 *            the authority of the member
+	 * @param latency
+	 *            the latency of the attempt in nanoseconds
+	 * @param error
+	 *            the error or <code>null</code>
+	 */
+	void afterAttempt(int attempt, String member, long latency, Exception error) {
+		for (int i = interceptors.length - 1; i >= 0; i--) {
+			interceptors[i].afterAttempt(this, attempt, member, latency, error);
+		}
+	}
+
+	/**
+	 * Notifies the interceptors that the operation completed.
+	 * 
+	 * @param attempts
+	 *            the number of attempts
+	 * @param error
+	 *            the error or <code>null</code>
+	 */
+	void afterOperation(int attempts, Exception error) {
+		long latency = System.nanoTime() - startTime;
+		for (int i = interceptors.length - 1; i >= 0; i--) {
+			interceptors[i].afterOperation(this, attempts, latency, error);
+		}
+	}
+}
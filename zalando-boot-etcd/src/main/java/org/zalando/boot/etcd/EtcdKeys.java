@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+/**
+ * Helper methods for handling node keys.
+ */
+final class EtcdKeys {
+
+	/**
+	 * Returns the given key in the form used by etcd in responses, with a
+	 * leading and without a trailing slash.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the normalized key
+	 */
+	static String normalize(String key) {
+		String normalized = key.startsWith("/") ? key : "/" + key;
+		if (normalized.length() > 1 && normalized.endsWith("/")) {
+			normalized = normalized.substring(0, normalized.length() - 1);
+		}
+		return normalized;
+	}
+
+	/**
+	 * Checks whether the given normalized directory key is an ancestor of the
+	 * given normalized key.
+	 * 
+	 * @param directory
+	 *            the directory key
+	 * @param key
+	 *            the key
+	 * @return <code>true</code> if the directory contains the key,
+	 *         <code>false</code> otherwise
+	 */
+	static boolean isAncestor(String directory, String key) {
+		if ("/".equals(directory)) {
+			return key.length() > 1;
+		}
+		return key.length() > directory.length() && key.startsWith(directory) && key.charAt(directory.length()) == '/';
+	}
+
+	/**
+	 * Returns the key of the parent directory of the given normalized key.
+	 * 
+	 * @param key
+	 *            the key
+	 * @return the parent key or <code>null</code> for the root
+	 */
+	static String parent(String key) {
+		if ("/".equals(key)) {
+			return null;
+		}
+		int index = key.lastIndexOf('/');
+		return index <= 0 ? "/" : key.substring(0, index);
+	}
+
+	/**
+	 * Creates a new EtcdKeys. Hidden to prevent instantiation
+	 */
+	private EtcdKeys() {
+		super();
+	}
+}
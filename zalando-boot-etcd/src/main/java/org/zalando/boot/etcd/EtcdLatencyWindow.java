@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Window of the most recent latencies, used to derive a rolling latency
+ * percentile. Recording is lock-free, the percentiles are recomputed
+ * periodically from a snapshot of the window.
+ */
+class EtcdLatencyWindow {
+
+	/**
+	 * number of samples between recomputing the percentile
+	 */
+	private static final int RECOMPUTE_INTERVAL = 64;
+
+	/**
+	 * latencies in nanoseconds, used as ring buffer
+	 */
+	private final AtomicLongArray samples;
+
+	/**
+	 * number of recorded samples
+	 */
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * percentile to compute, between <code>0</code> and <code>1</code>
+	 */
+	private volatile double percentile;
+
+	/**
+	 * most recently computed percentile in nanoseconds
+	 */
+	private volatile long value = -1;
+
+	/**
+	 * Creates a new EtcdLatencyWindow.
+	 * 
+	 * @param size
+	 *            the number of samples kept
+	 * @param percentile
+	 *            the percentile to compute
+	 */
+	EtcdLatencyWindow(int size, double percentile) {
+		this.samples = new AtomicLongArray(size);
+		this.percentile = percentile;
+	}
+
+	/**
+	 * Records the given latency.
+	 * 
+	 * @param latency
+	 *            the latency in nanoseconds
+	 */
+	void record(long latency) {
+		int n = count.getAndIncrement() & Integer.MAX_VALUE;
+		samples.set(n % samples.length(), latency);
+		if (n % RECOMPUTE_INTERVAL == RECOMPUTE_INTERVAL - 1) {
+			recompute(n < samples.length() ? n + 1 : samples.length());
+		}
+	}
+
+	/**
+	 * @param percentile
+	 *            the percentile to compute, between <code>0</code> and
+	 *            <code>1</code>
+	 */
+	void setPercentile(double percentile) {
+		this.percentile = percentile;
+		this.value = -1;
+	}
+
+	/**
+	 * @return the percentile in nanoseconds or <code>-1</code> if not enough
+	 *         samples were recorded yet
+	 */
+	long getPercentile() {
+		return value;
+	}
+
+	/**
+	 * Recomputes the percentile from the given number of samples.
+	 */
+	private void recompute(int size) {
+		long[] snapshot = new long[size];
+		for (int i = 0; i < size; i++) {
+			snapshot[i] = samples.get(i);
+		}
+		Arrays.sort(snapshot);
+		value = snapshot[Math.max(0, Math.min(size - 1, (int) Math.ceil(percentile * size) - 1))];
+	}
+}
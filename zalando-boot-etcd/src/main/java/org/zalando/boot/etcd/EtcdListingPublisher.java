@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * A Reactive Streams publisher of a recursive listing from etcd. The leaf
+ * nodes below the given key are published in the order returned by etcd, one
+ * node per unit of demand and without child nodes, and the stream completes
+ * after the last node. The listing is streamed with
+ * {@link EtcdClient#visit(String, EtcdVisitor)} once the subscriber requests
+ * the first node, so only a single node is held in memory at a time. While the
+ * subscriber has no demand, the listing holds its connection and a thread of
+ * the client's listing executor. Errors returned by etcd are signalled as
+ * {@link EtcdException}.
+ */
+public class EtcdListingPublisher implements Publisher<EtcdNode> {
+
+	/**
+	 * client
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * key
+	 */
+	private final String key;
+
+	/**
+	 * Creates a new EtcdListingPublisher.
+	 * 
+	 * @param client
+	 *            the client
+	 * @param key
+	 *            the key of the listed node
+	 */
+	public EtcdListingPublisher(EtcdClient client, String key) {
+		this.client = client;
+		this.key = key;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see Publisher#subscribe(Subscriber)
+	 */
+	@Override
+	public void subscribe(Subscriber<? super EtcdNode> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber must not be null");
+		}
+
+		subscriber.onSubscribe(new ListingSubscription(subscriber));
+	}
+
+	/**
+	 * Subscription streaming the listing to a single subscriber.
+	 */
+	private class ListingSubscription implements Subscription, Runnable, EtcdVisitor {
+
+		/**
+		 * subscriber
+		 */
+		private final Subscriber<? super EtcdNode> subscriber;
+
+		/**
+		 * outstanding demand
+		 */
+		private final AtomicLong requested = new AtomicLong();
+
+		/**
+		 * indicates whether the listing was started
+		 */
+		private final AtomicBoolean started = new AtomicBoolean();
+
+		/**
+		 * indicates whether the subscription is cancelled or terminated
+		 */
+		private volatile boolean cancelled = false;
+
+		/**
+		 * error for an invalid demand to signal, if any
+		 */
+		private volatile IllegalArgumentException invalidRequest;
+
+		ListingSubscription(Subscriber<? super EtcdNode> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("requested amount must be positive, was " + n);
+			} else {
+				EtcdWatchPublisher.addDemand(requested, n);
+			}
+			synchronized (this) {
+				notifyAll();
+			}
+
+			if (started.compareAndSet(false, true)) {
+				client.getListingExecutor().execute(this);
+			}
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (awaitDemand()) {
+					client.visit(key, this);
+					if (!cancelled) {
+						cancelled = true;
+						subscriber.onComplete();
+					}
+				}
+			} catch (ListingCancelledException e) {
+				// the subscriber cancelled or was already signalled
+			} catch (EtcdException | RuntimeException e) {
+				if (!cancelled) {
+					cancelled = true;
+					subscriber.onError(e);
+				}
+			}
+		}
+
+		@Override
+		public void visit(EtcdNode node) {
+			if (!awaitDemand()) {
+				throw new ListingCancelledException();
+			}
+
+			if (requested.get() != Long.MAX_VALUE) {
+				requested.decrementAndGet();
+			}
+			subscriber.onNext(node);
+		}
+
+		/**
+		 * Waits until the subscriber requests further nodes or cancels the
+		 * subscription and signals an invalid demand.
+		 * 
+		 * @return <code>true</code> if the next node can be emitted,
+		 *         <code>false</code> if the listing should stop
+		 */
+		private boolean awaitDemand() {
+			synchronized (this) {
+				while (!cancelled && invalidRequest == null && requested.get() == 0) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						cancelled = true;
+						subscriber.onError(new IllegalStateException("Listing of " + key + " was interrupted.", e));
+					}
+				}
+			}
+
+			if (invalidRequest != null && !cancelled) {
+				cancelled = true;
+				subscriber.onError(invalidRequest);
+			}
+			return !cancelled;
+		}
+	}
+
+	/**
+	 * Exception aborting a listing that is no longer subscribed.
+	 */
+	private static class ListingCancelledException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+/**
+ * Strategy selecting the etcd member a request is sent to. Members are
+ * identified by their index in the client's routing table, which also owns
+ * the {@link EtcdMemberState state} of every member. The client reports the
+ * outcome of every request, so implementations can base their choice on
+ * observed latencies and failures. Since the state is replaced together with
+ * the members, implementations should not keep state of their own about
+ * single members.
+ * <p>
+ * Implementations are called concurrently by all threads using the client and
+ * must be thread-safe.
+ * 
+ * @see EtcdClient#setMemberSelector(EtcdMemberSelector)
+ */
+public interface EtcdMemberSelector {
+
+	/**
+	 * Selects the member the next request is sent to.
+	 * 
+	 * @param members
+	 *            the state of the members, never empty
+	 * @param excluded
+	 *            the index of a member that must not be selected, e.g. because
+	 *            the request is already sent to it, or <code>-1</code>
+	 * @return the index of the selected member or <code>-1</code> if a member
+	 *         is excluded and no other member is available
+	 */
+	int select(EtcdMemberState[] members, int excluded);
+
+	/**
+	 * Called when a member answered a request, including etcd errors like a
+	 * missing key.
+	 * 
+	 * @param member
+	 *            the state of the member
+	 * @param latency
+	 *            the latency of the request in nanoseconds
+	 */
+	void success(EtcdMemberState member, long latency);
+
+	/**
+	 * Called when a member could not be reached or answered with a server
+	 * error.
+	 * 
+	 * @param member
+	 *            the state of the member
+	 */
+	void failure(EtcdMemberState member);
+
+}
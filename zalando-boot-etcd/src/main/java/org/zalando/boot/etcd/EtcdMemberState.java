@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State a {@link EtcdMemberSelector} keeps about a single member: the moving
+ * average of the latency and the circuit breaker. The state is owned by the
+ * routing table of the client, so it is replaced together with the members and
+ * never refers to a member of another routing table.
+ */
+public final class EtcdMemberState {
+
+	/**
+	 * value of {@link #ejectedUntil} while the circuit breaker is closed
+	 */
+	static final long CLOSED = Long.MIN_VALUE;
+
+	/**
+	 * bits of the moving average of the latency in nanoseconds, not measured
+	 * yet if <code>0</code>
+	 */
+	private final AtomicLong latency = new AtomicLong();
+
+	/**
+	 * {@link System#nanoTime()} until the member is ejected or {@link #CLOSED}
+	 */
+	final AtomicLong ejectedUntil = new AtomicLong(CLOSED);
+
+	/**
+	 * number of consecutive failures
+	 */
+	final AtomicInteger failures = new AtomicInteger();
+
+	/**
+	 * number of consecutive slow calls
+	 */
+	final AtomicInteger slowCalls = new AtomicInteger();
+
+	/**
+	 * indicates whether a probe request was sent to the ejected member
+	 */
+	volatile boolean probing;
+
+	/**
+	 * @return the moving average of the latency in nanoseconds or
+	 *         <code>0</code> if no latency was measured yet
+	 */
+	public double getLatency() {
+		return Double.longBitsToDouble(latency.get());
+	}
+
+	/**
+	 * @return <code>true</code> if the circuit breaker of the member is
+	 *         closed, <code>false</code> otherwise
+	 */
+	public boolean isHealthy() {
+		return ejectedUntil.get() == CLOSED;
+	}
+
+	/**
+	 * Adds the given sample to the moving average of the latency.
+	 * 
+	 * @param sample
+	 *            the latency in nanoseconds
+	 * @param smoothing
+	 *            the weight of the sample
+	 */
+	void update(long sample, double smoothing) {
+		while (true) {
+			long current = latency.get();
+			double average = Double.longBitsToDouble(current);
+			double updated = current == 0 ? sample : average + smoothing * (sample - average);
+			if (latency.compareAndSet(current, Double.doubleToRawLongBits(Math.max(updated, 1)))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Creates the state of the given number of members.
+	 * 
+	 * @param count
+	 *            the number of members
+	 * @return the state of the members
+	 */
+	static EtcdMemberState[] create(int count) {
+		EtcdMemberState[] members = new EtcdMemberState[count];
+		for (int i = 0; i < count; i++) {
+			members[i] = new EtcdMemberState();
+		}
+		return members;
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolling statistics of the requests sent to a single member, exposed for
+ * monitoring. Latency and error rate are exponentially weighted moving
+ * averages, so recent requests dominate without keeping a window of samples.
+ */
+class EtcdMemberStatistics {
+
+	/**
+	 * weight of a new sample in the moving averages
+	 */
+	private static final double SMOOTHING = 0.1;
+
+	/**
+	 * bits of the moving average of the latency in nanoseconds
+	 */
+	private final AtomicLong latency = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+
+	/**
+	 * bits of the moving average of the error rate
+	 */
+	private final AtomicLong errorRate = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+
+	/**
+	 * number of requests
+	 */
+	private final LongAdder requests = new LongAdder();
+
+	/**
+	 * number of failed requests
+	 */
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * Records a request the member answered.
+	 * 
+	 * @param latency
+	 *            the latency in nanoseconds
+	 */
+	void success(long latency) {
+		requests.increment();
+		update(this.latency, latency);
+		update(errorRate, 0);
+	}
+
+	/**
+	 * Records a request that failed because the member could not be reached.
+	 */
+	void failure() {
+		requests.increment();
+		failures.increment();
+		update(errorRate, 1);
+	}
+
+	/**
+	 * @return the moving average of the latency in nanoseconds or
+	 *         {@link Double#NaN} if no request succeeded yet
+	 */
+	double getLatency() {
+		return Double.longBitsToDouble(latency.get());
+	}
+
+	/**
+	 * @return the moving average of the error rate between <code>0</code> and
+	 *         <code>1</code> or {@link Double#NaN} if no request was sent yet
+	 */
+	double getErrorRate() {
+		return Double.longBitsToDouble(errorRate.get());
+	}
+
+	/**
+	 * @return the number of requests
+	 */
+	long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * @return the number of failed requests
+	 */
+	long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * Adds the given sample to the given moving average.
+	 */
+	private static void update(AtomicLong average, double sample) {
+		while (true) {
+			long current = average.get();
+			double value = Double.longBitsToDouble(current);
+			double updated = Double.isNaN(value) ? sample : value + SMOOTHING * (sample - value);
+			if (average.compareAndSet(current, Double.doubleToRawLongBits(updated))) {
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import org.zalando.boot.etcd.AbstractEtcdMemberSelector.State;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Status of a single etcd cluster member as seen by the client.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EtcdMemberStatus {
+
+	/**
+	 * location
+	 */
+	private String location;
+
+	/**
+	 * indicates whether the member is the current leader
+	 */
+	private boolean leader;
+
+	/**
+	 * state of the circuit breaker, always {@link State#CLOSED} if the member
+	 * selector has no circuit breakers
+	 */
+	private State state;
+
+	/**
+	 * moving average of the latency in milliseconds or <code>null</code> if no
+	 * request succeeded yet
+	 */
+	private Double latency;
+
+	/**
+	 * moving average of the error rate between <code>0</code> and
+	 * <code>1</code> or <code>null</code> if no request was sent yet
+	 */
+	private Double errorRate;
+
+	/**
+	 * number of requests since the member was added
+	 */
+	private long requests;
+
+	/**
+	 * number of failed requests since the member was added
+	 */
+	private long failures;
+
+	/**
+	 * round-trip time in milliseconds of the probe of the last membership
+	 * update or <code>null</code> if the member did not answer or was not
+	 * probed yet
+	 */
+	private Double probeLatency;
+
+}
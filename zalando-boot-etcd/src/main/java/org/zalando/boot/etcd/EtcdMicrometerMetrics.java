@@ -0,0 +1,374 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.util.ReflectionUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the measurements of an {@link EtcdClient} with Micrometer (requires
+ * Micrometer on the class path). The following meters are registered:
+ * <ul>
+ * <li><code>etcd.client.operations</code>: timer with percentile histogram by
+ * operation and outcome, including all retries</li>
+ * <li><code>etcd.client.requests</code>: timer by operation, member, outcome
+ * and etcd error code of every single request</li>
+ * <li><code>etcd.client.retries</code> and <code>etcd.client.failovers</code>:
+ * counters by operation</li>
+ * <li><code>etcd.client.membership.changes</code>: counter of changes after
+ * the initial membership</li>
+ * <li><code>etcd.client.members</code>: gauge of the number of members</li>
+ * </ul>
+ * Meters are registered on first use and cached per operation, member and
+ * outcome, so recording a measurement does not allocate. The request meters of
+ * members that left the cluster are dropped from the cache and, with
+ * Micrometer 1.1 or later, removed from the registry.
+ */
+public class EtcdMicrometerMetrics implements EtcdClientMetrics {
+
+	/**
+	 * method removing a meter from the registry or <code>null</code> if
+	 * Micrometer does not support removing meters
+	 */
+	private static final Method REMOVE = ReflectionUtils.findMethod(MeterRegistry.class, "remove", Meter.class);
+
+	/**
+	 * number of error codes per class of etcd errors, e.g. 100 to 115
+	 */
+	private static final int ERROR_CODES_PER_CLASS = 16;
+
+	/**
+	 * number of cached request timers by etcd error code, covering the error
+	 * classes 100 to 500
+	 */
+	private static final int ERROR_SLOTS = 5 * ERROR_CODES_PER_CLASS;
+
+	/**
+	 * registry the meters are registered with
+	 */
+	private final MeterRegistry registry;
+
+	/**
+	 * meters by operation
+	 */
+	private final ConcurrentMap<String, OperationMeters> operations = new ConcurrentHashMap<>();
+
+	/**
+	 * counter of membership changes
+	 */
+	private final Counter membershipChanges;
+
+	/**
+	 * number of members, <code>-1</code> until reported
+	 */
+	private final AtomicInteger members = new AtomicInteger(-1);
+
+	/**
+	 * Creates a new EtcdMicrometerMetrics.
+	 * 
+	 * @param registry
+	 *            the registry the meters are registered with
+	 */
+	public EtcdMicrometerMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		this.membershipChanges = registry.counter("etcd.client.membership.changes");
+		registry.gauge("etcd.client.members", members);
+	}
+
+	@Override
+	public void operation(String operation, Outcome outcome, long latency) {
+		meters(operation).operation(outcome).record(latency, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void request(String operation, String member, Outcome outcome, int errorCode, long latency) {
+		meters(operation).member(member).request(outcome, errorCode).record(latency, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void retry(String operation) {
+		meters(operation).retries.increment();
+	}
+
+	@Override
+	public void failover(String operation) {
+		meters(operation).failovers.increment();
+	}
+
+	@Override
+	public void members(String[] locations) {
+		if (this.members.getAndSet(locations.length) < 0) {
+			return;
+		}
+		membershipChanges.increment();
+
+		Set<String> retained = new HashSet<>();
+		for (String location : locations) {
+			retained.add(URI.create(location).getAuthority());
+		}
+		Set<String> departed = new HashSet<>();
+		for (OperationMeters meters : operations.values()) {
+			meters.retain(retained, departed);
+		}
+		for (String member : departed) {
+			remove(member);
+		}
+	}
+
+	/**
+	 * Removes the request meters of the given member from the registry if
+	 * Micrometer supports it.
+	 * 
+	 * @param member
+	 *            the location of the member
+	 */
+	private void remove(String member) {
+		if (REMOVE == null) {
+			return;
+		}
+
+		for (Meter meter : registry.find("etcd.client.requests").tag("member", member).meters()) {
+			ReflectionUtils.invokeMethod(REMOVE, registry, meter);
+		}
+	}
+
+	/**
+	 * Returns the meters of the given operation.
+	 * 
+	 * @param operation
+	 *            the operation
+	 * @return the meters
+	 */
+	private OperationMeters meters(String operation) {
+		OperationMeters meters = operations.get(operation);
+		if (meters == null) {
+			meters = new OperationMeters(operation);
+			OperationMeters existing = operations.putIfAbsent(operation, meters);
+			if (existing != null) {
+				meters = existing;
+			}
+		}
+		return meters;
+	}
+
+	/**
+	 * Meters of a single operation.
+	 */
+	private class OperationMeters {
+
+		/**
+		 * operation
+		 */
+		private final String operation;
+
+		/**
+		 * operation timers by outcome
+		 */
+		private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(Outcome.values().length);
+
+		/**
+		 * request meters by member
+		 */
+		private final ConcurrentMap<String, MemberMeters> members = new ConcurrentHashMap<>();
+
+		/**
+		 * retry counter
+		 */
+		private final Counter retries;
+
+		/**
+		 * failover counter
+		 */
+		private final Counter failovers;
+
+		OperationMeters(String operation) {
+			this.operation = operation;
+			this.retries = registry.counter("etcd.client.retries", "operation", operation);
+			this.failovers = registry.counter("etcd.client.failovers", "operation", operation);
+		}
+
+		/**
+		 * Returns the operation timer of the given outcome.
+		 * 
+		 * @param outcome
+		 *            the outcome
+		 * @return the timer
+		 */
+		Timer operation(Outcome outcome) {
+			Timer timer = timers.get(outcome.ordinal());
+			if (timer == null) {
+				timer = Timer.builder("etcd.client.operations").tags("operation", operation, "outcome", outcome.name())
+						.publishPercentileHistogram().register(registry);
+				timers.set(outcome.ordinal(), timer);
+			}
+			return timer;
+		}
+
+		/**
+		 * Returns the request meters of the given member.
+		 * 
+		 * @param member
+		 *            the location of the member
+		 * @return the meters
+		 */
+		MemberMeters member(String member) {
+			MemberMeters meters = members.get(member);
+			if (meters == null) {
+				meters = new MemberMeters(operation, member);
+				MemberMeters existing = members.putIfAbsent(member, meters);
+				if (existing != null) {
+					meters = existing;
+				}
+			}
+			return meters;
+		}
+
+		/**
+		 * Drops the request meters of all members but the given ones.
+		 * 
+		 * @param retained
+		 *            the locations of the retained members
+		 * @param departed
+		 *            the locations of the dropped members are added to
+		 */
+		void retain(Set<String> retained, Set<String> departed) {
+			for (Iterator<String> iterator = members.keySet().iterator(); iterator.hasNext();) {
+				String member = iterator.next();
+				if (!retained.contains(member)) {
+					iterator.remove();
+					departed.add(member);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Request meters of a single operation and member.
+	 */
+	private class MemberMeters {
+
+		/**
+		 * operation
+		 */
+		private final String operation;
+
+		/**
+		 * location of the member
+		 */
+		private final String member;
+
+		/**
+		 * request timers without etcd error code by outcome
+		 */
+		private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(Outcome.values().length);
+
+		/**
+		 * request timers of HTTP errors by slot of the etcd error code
+		 */
+		private final AtomicReferenceArray<Timer> errors = new AtomicReferenceArray<>(ERROR_SLOTS);
+
+		MemberMeters(String operation, String member) {
+			this.operation = operation;
+			this.member = member;
+		}
+
+		/**
+		 * Returns the request timer of the given outcome and error code.
+		 * 
+		 * @param outcome
+		 *            the outcome
+		 * @param errorCode
+		 *            the etcd error code or <code>0</code>
+		 * @return the timer
+		 */
+		Timer request(Outcome outcome, int errorCode) {
+			if (errorCode != 0) {
+				int slot = errorSlot(errorCode);
+				if (slot < 0) {
+					// unknown error codes are rare, the registry returns the existing timer
+					return register(outcome, errorCode);
+				}
+
+				Timer timer = errors.get(slot);
+				if (timer == null) {
+					timer = register(outcome, errorCode);
+					errors.set(slot, timer);
+				}
+				return timer;
+			}
+
+			Timer timer = timers.get(outcome.ordinal());
+			if (timer == null) {
+				timer = register(outcome, 0);
+				timers.set(outcome.ordinal(), timer);
+			}
+			return timer;
+		}
+
+		/**
+		 * Returns the slot of the given etcd error code. The codes of each
+		 * class of etcd errors, e.g. the key errors starting at 100, share a
+		 * block of slots.
+		 * 
+		 * @param errorCode
+		 *            the etcd error code
+		 * @return the slot or <code>-1</code> if the code has no slot
+		 */
+		private int errorSlot(int errorCode) {
+			int errorClass = errorCode / 100 - 1;
+			int offset = errorCode % 100;
+			if (errorClass < 0 || offset >= ERROR_CODES_PER_CLASS) {
+				return -1;
+			}
+
+			int slot = errorClass * ERROR_CODES_PER_CLASS + offset;
+			return slot < ERROR_SLOTS ? slot : -1;
+		}
+
+		/**
+		 * Registers the request timer of the given outcome and error code.
+		 * The registry returns the existing timer if it was registered
+		 * concurrently.
+		 */
+		private Timer register(Outcome outcome, int errorCode) {
+			return Timer.builder("etcd.client.requests").tags("operation", operation, "member", member, "outcome",
+					outcome.name(), "error", Integer.toString(errorCode)).register(registry);
+		}
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A local mirror of all nodes below a prefix in etcd. The mirror is
+ * bootstrapped from a single recursive read and kept current by a recursive
+ * watch starting right after the read. Nodes are kept without their children
+ * in a sorted index keyed by path, so lookups and prefix or range scans never
+ * touch the network. Lookups never lock. Scans return an immutable snapshot of
+ * the mirror at the index of the last applied change, which is taken at most
+ * once per applied change, so a scan never mixes nodes of different states.
+ */
+@Slf4j
+public class EtcdMirror implements InitializingBean, DisposableBean {
+
+	/**
+	 * client
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * normalized key of the mirrored node
+	 */
+	private final String prefix;
+
+	/**
+	 * mirrored nodes by key
+	 */
+	private final ConcurrentNavigableMap<String, EtcdNode> nodes = new ConcurrentSkipListMap<>();
+
+	/**
+	 * index of the last applied change
+	 */
+	private volatile int index;
+
+	/**
+	 * immutable snapshot of the mirrored nodes at the current index or
+	 * <code>null</code> if it was not taken yet
+	 */
+	private volatile NavigableMap<String, EtcdNode> snapshot;
+
+	/**
+	 * watch
+	 */
+	private EtcdWatch watch;
+
+	/**
+	 * Creates a new EtcdMirror.
+	 * 
+	 * @param client
+	 *            the client
+	 * @param prefix
+	 *            the key of the mirrored node
+	 */
+	public EtcdMirror(EtcdClient client, String prefix) {
+		this.client = client;
+		this.prefix = EtcdKeys.normalize(prefix);
+	}
+
+	/**
+	 * @return the key of the mirrored node
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * @return the index of the last applied change
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the mirrored node with the given key. Directory nodes are
+	 * returned without their children.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @return the node or <code>null</code> if the node does not exist
+	 */
+	public EtcdNode get(String key) {
+		return nodes.get(EtcdKeys.normalize(key));
+	}
+
+	/**
+	 * Returns the value of the mirrored node with the given key.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @return the value or <code>null</code> if the node does not exist or is
+	 *         a directory
+	 */
+	public String getValue(String key) {
+		EtcdNode node = get(key);
+		return node != null ? node.getValue() : null;
+	}
+
+	/**
+	 * Returns all mirrored nodes whose key starts with the given prefix,
+	 * ordered by key. The result is an immutable snapshot that is not updated
+	 * by later changes.
+	 * 
+	 * @param keyPrefix
+	 *            the key prefix
+	 * @return the nodes by key
+	 */
+	public SortedMap<String, EtcdNode> scan(String keyPrefix) {
+		String from = keyPrefix.startsWith("/") ? keyPrefix : "/" + keyPrefix;
+		return snapshot().subMap(from, true, from + Character.MAX_VALUE, false);
+	}
+
+	/**
+	 * Returns all mirrored nodes whose key is in the given range, ordered by
+	 * key. The result is an immutable snapshot that is not updated by later
+	 * changes.
+	 * 
+	 * @param fromKey
+	 *            the lowest key, inclusive
+	 * @param toKey
+	 *            the highest key, exclusive
+	 * @return the nodes by key
+	 */
+	public SortedMap<String, EtcdNode> range(String fromKey, String toKey) {
+		return snapshot().subMap(EtcdKeys.normalize(fromKey), true, EtcdKeys.normalize(toKey), false);
+	}
+
+	/**
+	 * @return an immutable snapshot of all mirrored nodes by key
+	 */
+	public NavigableMap<String, EtcdNode> getNodes() {
+		return snapshot();
+	}
+
+	/**
+	 * Returns the snapshot of the mirrored nodes at the current index and
+	 * takes it if no scan happened since the last applied change.
+	 * 
+	 * @return the snapshot
+	 */
+	private NavigableMap<String, EtcdNode> snapshot() {
+		NavigableMap<String, EtcdNode> current = snapshot;
+		if (current != null) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (snapshot == null) {
+				snapshot = Collections.unmodifiableNavigableMap(new TreeMap<>(nodes));
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() throws EtcdException {
+		int waitIndex;
+		try {
+			EtcdResponse response = client.read(prefix.substring(1), true);
+			synchronized (this) {
+				replace(prefix, response.getNode());
+				snapshot = null;
+			}
+			// changes outside of the prefix advance the etcd index, too
+			waitIndex = Math.max(response.getEtcdIndex(), EtcdWatch.maxModifiedIndex(response.getNode())) + 1;
+		} catch (EtcdException e) {
+			if (e.getError() == null || e.getError().getErrorCode() != EtcdErrorCodes.ECODE_KEY_NOT_FOUND) {
+				throw e;
+			}
+			waitIndex = e.getError().getIndex() + 1;
+		}
+
+		index = waitIndex - 1;
+		watch = client.watch(prefix.substring(1), waitIndex, true, new EtcdListener() {
+
+			@Override
+			public void onChange(EtcdResponse response) {
+				apply(response);
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if (watch != null) {
+			watch.cancel();
+		}
+	}
+
+	/**
+	 * Applies the given change to the mirrored nodes and drops the snapshot of
+	 * the previous state.
+	 * 
+	 * @param response
+	 *            the change
+	 */
+	synchronized void apply(EtcdResponse response) {
+		EtcdNode node = response.getNode();
+		if (node == null || node.getKey() == null) {
+			return;
+		}
+
+		String key = EtcdKeys.normalize(node.getKey());
+		String action = response.getAction();
+		if ("delete".equals(action) || "expire".equals(action) || "compareAndDelete".equals(action)) {
+			nodes.remove(key);
+			descendants(key).clear();
+		} else if ("get".equals(action)) {
+			replace(key, node);
+		} else {
+			nodes.put(key, copy(node));
+		}
+
+		index = Math.max(index, node.getModifiedIndex());
+		snapshot = null;
+	}
+
+	/**
+	 * Replaces the subtree with the given key by the given node and its
+	 * children. New nodes are added before removed nodes are dropped, so
+	 * readers always see either the previous or the current state of a node.
+	 */
+	private void replace(String key, EtcdNode node) {
+		Map<String, EtcdNode> replacement = new TreeMap<>();
+		flatten(node, replacement);
+		nodes.putAll(replacement);
+
+		if (!replacement.containsKey(key)) {
+			nodes.remove(key);
+		}
+		for (String existing : descendants(key).keySet()) {
+			if (!replacement.containsKey(existing)) {
+				nodes.remove(existing);
+			}
+		}
+
+		log.debug("Mirrored " + replacement.size() + " nodes of " + key + ".");
+	}
+
+	/**
+	 * Returns the mirrored descendants of the node with the given key.
+	 */
+	private ConcurrentNavigableMap<String, EtcdNode> descendants(String key) {
+		if ("/".equals(key)) {
+			return nodes.tailMap(key, false);
+		}
+		return nodes.subMap(key + "/", key + "0");
+	}
+
+	/**
+	 * Adds the given node and all its children to the given map.
+	 */
+	private static void flatten(EtcdNode node, Map<String, EtcdNode> target) {
+		if (node == null || node.getKey() == null) {
+			return;
+		}
+
+		target.put(EtcdKeys.normalize(node.getKey()), copy(node));
+		if (node.getNodes() != null) {
+			for (EtcdNode child : node.getNodes()) {
+				flatten(child, target);
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the given node without its children.
+	 */
+	private static EtcdNode copy(EtcdNode node) {
+		return new EtcdNode(node.getKey(), node.getValue(), node.getTtl(), node.isDir(), node.getCreatedIndex(),
+				node.getModifiedIndex(), node.getExpiration(), null);
+	}
+}
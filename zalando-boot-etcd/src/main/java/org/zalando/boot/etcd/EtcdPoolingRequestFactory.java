@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A request factory keeping persistent connections to the etcd cluster
+ * members in a pool. Connections are limited per member, kept alive between
+ * requests, evicted after being idle for a while and can be opened in advance
+ * using {@link #warmUp(String[], int)}. A request waiting for a connection
+ * fails after the connection request timeout instead of blocking until a
+ * connection is released.
+ * <p>
+ * The pool is created by {@link #afterPropertiesSet()} and closed by
+ * {@link #destroy()}.
+ */
+@Slf4j
+public class EtcdPoolingRequestFactory extends HttpComponentsClientHttpRequestFactory implements InitializingBean {
+
+	/**
+	 * maximum number of connections per etcd member
+	 */
+	@Getter
+	@Setter
+	private int maxConnectionsPerLocation = 20;
+
+	/**
+	 * maximum number of connections to all etcd members
+	 */
+	@Getter
+	@Setter
+	private int maxConnections = 100;
+
+	/**
+	 * maximum time in milliseconds an idle connection is kept alive
+	 */
+	@Getter
+	@Setter
+	private long keepAlive = 30000;
+
+	/**
+	 * time in milliseconds after which idle connections are evicted by a
+	 * background thread
+	 */
+	@Getter
+	@Setter
+	private long idleTimeout = 60000;
+
+	/**
+	 * connect timeout in milliseconds
+	 */
+	@Getter
+	private int connectTimeout = 1000;
+
+	/**
+	 * time in milliseconds to wait for a connection from the pool when all
+	 * connections to a member are in use
+	 */
+	@Getter
+	private int connectionRequestTimeout = 1000;
+
+	/**
+	 * connection manager
+	 */
+	private PoolingHttpClientConnectionManager connectionManager;
+
+	/**
+	 * Creates a new EtcdPoolingRequestFactory.
+	 */
+	public EtcdPoolingRequestFactory() {
+		super();
+		super.setConnectTimeout(connectTimeout);
+		super.setConnectionRequestTimeout(connectionRequestTimeout);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see HttpComponentsClientHttpRequestFactory#setConnectTimeout(int)
+	 */
+	@Override
+	public void setConnectTimeout(int timeout) {
+		super.setConnectTimeout(timeout);
+		this.connectTimeout = timeout;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see HttpComponentsClientHttpRequestFactory#setConnectionRequestTimeout(int)
+	 */
+	@Override
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		super.setConnectionRequestTimeout(connectionRequestTimeout);
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerLocation);
+		connectionManager.setMaxTotal(maxConnections);
+
+		setHttpClient(HttpClients.custom().useSystemProperties().setConnectionManager(connectionManager)
+				.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+
+					@Override
+					public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+						long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response,
+								context);
+						return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+					}
+				}).evictExpiredConnections().evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+				.disableAutomaticRetries().build());
+	}
+
+	/**
+	 * Opens the given number of connections to each of the given locations in
+	 * advance, so the first requests do not pay for connection setup.
+	 * Locations that cannot be reached are skipped.
+	 * 
+	 * @param locations
+	 *            the locations
+	 * @param connections
+	 *            the number of connections per location
+	 * @return the number of opened connections
+	 */
+	public int warmUp(String[] locations, int connections) {
+		if (connectionManager == null) {
+			throw new IllegalStateException("connection pool is not initialized");
+		}
+
+		int opened = 0;
+		for (String location : locations) {
+			HttpRoute route = new HttpRoute(toHost(location));
+			HttpContext context = new BasicHttpContext();
+			List<HttpClientConnection> leased = new ArrayList<>(connections);
+			try {
+				for (int i = 0; i < connections; i++) {
+					HttpClientConnection connection = connectionManager.requestConnection(route, null)
+							.get(connectTimeout, TimeUnit.MILLISECONDS);
+					leased.add(connection);
+					if (!connection.isOpen()) {
+						connectionManager.connect(connection, route, connectTimeout, context);
+						connectionManager.routeComplete(connection, route, context);
+						opened++;
+					}
+				}
+			} catch (IOException | ExecutionException e) {
+				log.warn("Could not open connections to " + location + ".", e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} finally {
+				for (HttpClientConnection connection : leased) {
+					connectionManager.releaseConnection(connection, null, keepAlive, TimeUnit.MILLISECONDS);
+				}
+			}
+		}
+		return opened;
+	}
+
+	/**
+	 * @return the number of idle connections in the pool
+	 */
+	public int getAvailableConnections() {
+		return connectionManager == null ? 0 : connectionManager.getTotalStats().getAvailable();
+	}
+
+	/**
+	 * Returns the host of the given location with an explicit port.
+	 * 
+	 * @param location
+	 *            the location
+	 * @return the host
+	 */
+	private static HttpHost toHost(String location) {
+		URI uri = URI.create(location);
+		int port = uri.getPort();
+		if (port < 0) {
+			port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+		}
+		return new HttpHost(uri.getHost(), port, uri.getScheme());
+	}
+}
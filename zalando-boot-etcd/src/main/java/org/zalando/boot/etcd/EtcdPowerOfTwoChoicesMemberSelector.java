@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Member selector picking two random members and sending the request to the
+ * healthy one with the lower moving average of the latency. Other than
+ * {@link EtcdEwmaMemberSelector} the load is spread over all fast members
+ * instead of concentrating on the single fastest one.
+ */
+public class EtcdPowerOfTwoChoicesMemberSelector extends AbstractEtcdMemberSelector {
+
+	@Override
+	protected int selectHealthy(EtcdMemberState[] members, int excluded) {
+		if (members.length == 1) {
+			return isHealthy(members, 0, excluded) ? 0 : -1;
+		}
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(members.length);
+		int second = random.nextInt(members.length - 1);
+		if (second >= first) {
+			second++;
+		}
+
+		boolean firstHealthy = isHealthy(members, first, excluded);
+		boolean secondHealthy = isHealthy(members, second, excluded);
+		if (firstHealthy && secondHealthy) {
+			return members[first].getLatency() <= members[second].getLatency() ? first : second;
+		} else if (firstHealthy) {
+			return first;
+		} else if (secondHealthy) {
+			return second;
+		}
+
+		for (int i = 0; i < members.length; i++) {
+			if (isHealthy(members, i, excluded)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A watcher that multiplexes listeners for keys and key prefixes onto a single
+ * recursive watch per root node. All changes below a root are received by one
+ * long-poll and dispatched in order to every listener whose key or prefix
+ * matches the changed node.
+ */
+@Slf4j
+public class EtcdPrefixWatcher implements DisposableBean {
+
+	/**
+	 * client
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * watched roots by key
+	 */
+	private final ConcurrentMap<String, Root> roots = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new EtcdPrefixWatcher.
+	 * 
+	 * @param client
+	 *            the client
+	 */
+	public EtcdPrefixWatcher(EtcdClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Notifies the given listener about changes of the node with the given
+	 * key using the recursive watch of the given root.
+	 * 
+	 * @param root
+	 *            the key of the watched root node
+	 * @param key
+	 *            the key of the node below the root
+	 * @param listener
+	 *            the listener
+	 * @return the registration of the listener
+	 */
+	public Registration watchKey(String root, String key, EtcdListener listener) {
+		return register(root, key, false, listener);
+	}
+
+	/**
+	 * Notifies the given listener about changes of all nodes whose key starts
+	 * with the given prefix using the recursive watch of the given root.
+	 * 
+	 * @param root
+	 *            the key of the watched root node
+	 * @param prefix
+	 *            the key prefix of the nodes below the root
+	 * @param listener
+	 *            the listener
+	 * @return the registration of the listener
+	 */
+	public Registration watchPrefix(String root, String prefix, EtcdListener listener) {
+		return register(root, prefix, true, listener);
+	}
+
+	/**
+	 * @return the keys of the currently watched root nodes
+	 */
+	public List<String> getRoots() {
+		return new ArrayList<>(roots.keySet());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see DisposableBean#destroy()
+	 */
+	@Override
+	public synchronized void destroy() {
+		for (Root root : roots.values()) {
+			root.watch.cancel();
+		}
+		roots.clear();
+	}
+
+	/**
+	 * Registers the given listener for the given key or prefix below the given
+	 * root and starts watching the root if it is not watched yet.
+	 */
+	private synchronized Registration register(String rootKey, String key, boolean prefix, EtcdListener listener) {
+		String normalizedRoot = EtcdKeys.normalize(rootKey);
+		String normalizedKey = EtcdKeys.normalize(key);
+		if (!normalizedKey.equals(normalizedRoot) && !EtcdKeys.isAncestor(normalizedRoot, normalizedKey)) {
+			throw new IllegalArgumentException("key " + key + " is not below root " + rootKey + ".");
+		}
+
+		Registration registration = new Registration(normalizedRoot, normalizedKey, prefix, listener);
+
+		Root root = roots.get(normalizedRoot);
+		if (root == null) {
+			// register before watching, so the first change is not missed
+			root = new Root();
+			root.registrations.add(registration);
+			root.watch = client.watch(rootKey, true, root);
+			roots.put(normalizedRoot, root);
+		} else {
+			root.registrations.add(registration);
+		}
+		return registration;
+	}
+
+	/**
+	 * Removes the given registration and stops watching its root if it was
+	 * the last registration.
+	 */
+	private synchronized void unregister(Registration registration) {
+		Root root = roots.get(registration.root);
+		if (root != null && root.registrations.remove(registration) && root.registrations.isEmpty()) {
+			root.watch.cancel();
+			roots.remove(registration.root);
+		}
+	}
+
+	/**
+	 * A watched root node dispatching its changes to the registered
+	 * listeners.
+	 */
+	private static class Root implements EtcdListener {
+
+		/**
+		 * registrations, copied on write so dispatching does not lock
+		 */
+		private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+		/**
+		 * watch
+		 */
+		private EtcdWatch watch;
+
+		@Override
+		public void onChange(EtcdResponse response) {
+			if (response.getNode() == null || response.getNode().getKey() == null) {
+				return;
+			}
+
+			String key = response.getNode().getKey();
+			for (Registration registration : registrations) {
+				if (registration.matches(key)) {
+					try {
+						registration.listener.onChange(response);
+					} catch (RuntimeException e) {
+						log.error("Listener failed to process change of " + key + ".", e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The registration of a listener for a key or key prefix.
+	 */
+	public class Registration {
+
+		/**
+		 * key of the root node
+		 */
+		private final String root;
+
+		/**
+		 * key or key prefix
+		 */
+		private final String key;
+
+		/**
+		 * indicates whether the key is a prefix
+		 */
+		private final boolean prefix;
+
+		/**
+		 * listener
+		 */
+		private final EtcdListener listener;
+
+		/**
+		 * Creates a new Registration.
+		 */
+		private Registration(String root, String key, boolean prefix, EtcdListener listener) {
+			this.root = root;
+			this.key = key;
+			this.prefix = prefix;
+			this.listener = listener;
+		}
+
+		/**
+		 * @return the key or key prefix
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return <code>true</code> if the key is a prefix, <code>false</code>
+		 *         otherwise
+		 */
+		public boolean isPrefix() {
+			return prefix;
+		}
+
+		/**
+		 * Removes the registration. The root node is not watched anymore once
+		 * its last registration is removed.
+		 */
+		public void cancel() {
+			unregister(this);
+		}
+
+		/**
+		 * Checks whether a change of the node with the given key concerns
+		 * this registration, either because the node matches the key or
+		 * prefix or because the node is a directory containing it.
+		 */
+		private boolean matches(String changedKey) {
+			if (prefix ? changedKey.startsWith(key) : changedKey.equals(key)) {
+				return true;
+			}
+			return EtcdKeys.isAncestor(changedKey, key);
+		}
+	}
+}
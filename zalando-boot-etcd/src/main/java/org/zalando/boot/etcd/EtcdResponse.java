@@ -23,7 +23,8 @@
  */
 package org.zalando.boot.etcd;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -36,7 +37,6 @@ import lombok.NoArgsConstructor;
  */
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class EtcdResponse {
 
 	/**
@@ -54,4 +54,27 @@ public class EtcdResponse {
 	 */
 	private EtcdNode prevNode;
 
+	/**
+	 * etcd index when the response was created as reported by the X-Etcd-Index
+	 * header or <code>0</code> if unknown.
+	 */
+	@JsonIgnore
+	private int etcdIndex;
+
+	/**
+	 * Creates a new EtcdResponse.
+	 * 
+	 * @param action
+	 *            the action
+	 * @param node
+	 *            the node
+	 * @param prevNode
+	 *            the previous node
+	 */
+	public EtcdResponse(String action, EtcdNode node, EtcdNode prevNode) {
+		this.action = action;
+		this.node = node;
+		this.prevNode = prevNode;
+	}
+
 }
@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budget limiting the retries of a client to a fraction of its successful
+ * requests, so retries cannot multiply the load on an etcd cluster that is
+ * already struggling. Every successful request deposits the
+ * {@link #getRatio() ratio} of a retry, every retry withdraws a whole one.
+ * The balance is capped, allowing a burst of retries after a quiet period.
+ * <p>
+ * The balance is updated with atomic operations only.
+ */
+public class EtcdRetryBudget {
+
+	/**
+	 * number of units per retry
+	 */
+	private static final long RETRY = 1000;
+
+	/**
+	 * fraction of a retry deposited by every successful request
+	 */
+	private final double ratio;
+
+	/**
+	 * maximum number of retries in the budget
+	 */
+	private final int burst;
+
+	/**
+	 * units deposited per successful request
+	 */
+	private final long deposit;
+
+	/**
+	 * balance in units
+	 */
+	private final AtomicLong balance;
+
+	/**
+	 * Creates a new EtcdRetryBudget.
+	 * 
+	 * @param ratio
+	 *            the fraction of a retry deposited by every successful
+	 *            request
+	 * @param burst
+	 *            the maximum number of retries in the budget, which is also
+	 *            the initial balance
+	 */
+	public EtcdRetryBudget(double ratio, int burst) {
+		this.ratio = ratio;
+		this.burst = burst;
+		this.deposit = Math.round(ratio * RETRY);
+		this.balance = new AtomicLong(burst * RETRY);
+	}
+
+	/**
+	 * @return the fraction of a retry deposited by every successful request
+	 */
+	public double getRatio() {
+		return ratio;
+	}
+
+	/**
+	 * @return the maximum number of retries in the budget
+	 */
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * @return the number of retries currently available
+	 */
+	public double getAvailable() {
+		return (double) balance.get() / RETRY;
+	}
+
+	/**
+	 * Deposits the share of a successful request.
+	 */
+	public void deposit() {
+		long max = burst * RETRY;
+		while (true) {
+			long current = balance.get();
+			if (current >= max || balance.compareAndSet(current, Math.min(current + deposit, max))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Withdraws a retry if available.
+	 * 
+	 * @return <code>true</code> if the retry may be done, <code>false</code>
+	 *         if the budget is exhausted
+	 */
+	public boolean tryWithdraw() {
+		while (true) {
+			long current = balance.get();
+			if (current < RETRY) {
+				return false;
+			}
+			if (balance.compareAndSet(current, current - RETRY)) {
+				return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+/**
+ * Policy deciding how long the client waits before retrying a request that
+ * could not reach any etcd member. The number and total duration of retries
+ * are bounded by {@link EtcdClient#getRetryCount()} and
+ * {@link EtcdClient#getRetryDuration()}.
+ * <p>
+ * Implementations are called concurrently by all threads using the client and
+ * must be thread-safe.
+ * 
+ * @see EtcdClient#setRetryPolicy(EtcdRetryPolicy)
+ */
+public interface EtcdRetryPolicy {
+
+	/**
+	 * Returns the delay before the given retry.
+	 * 
+	 * @param retry
+	 *            the number of the retry, starting with <code>1</code>
+	 * @return the delay in milliseconds or <code>-1</code> if the request
+	 *         should not be retried
+	 */
+	long getDelay(int retry);
+
+}
@@ -0,0 +1,49 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Member selector sending requests to the healthy members in turn.
+ */
+public class EtcdRoundRobinMemberSelector extends AbstractEtcdMemberSelector {
+
+	/**
+	 * counter of the selected members
+	 */
+	private final AtomicInteger next = new AtomicInteger();
+
+	@Override
+	protected int selectHealthy(EtcdMemberState[] members, int excluded) {
+		int start = next.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0; i < members.length; i++) {
+			int member = (start + i) % members.length;
+			if (isHealthy(members, member, excluded)) {
+				return member;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Immutable snapshot of the etcd cluster members requests are routed to. A
+ * member is addressed by its index, which is only meaningful for the snapshot
+ * it was taken from, so a request reads the snapshot once and uses it for
+ * selecting, addressing and reporting on the member. The state the member
+ * selector keeps about the members and their statistics belong to the table
+ * as well, so they are swapped atomically with the members and never refer to
+ * a member of another table.
+ */
+final class EtcdRoutingTable {
+
+	/**
+	 * empty routing table
+	 */
+	static final EtcdRoutingTable EMPTY = new EtcdRoutingTable(new String[0]);
+
+	/**
+	 * locations of the members
+	 */
+	private final String[] locations;
+
+	/**
+	 * base URIs of the members, same order as the locations
+	 */
+	private final String[] bases;
+
+	/**
+	 * state of the member selector, same order as the locations
+	 */
+	private final EtcdMemberState[] states;
+
+	/**
+	 * statistics of the members, same order as the locations
+	 */
+	private final EtcdMemberStatistics[] statistics;
+
+	/**
+	 * Creates a new EtcdRoutingTable.
+	 * 
+	 * @param locations
+	 *            the locations of the members
+	 */
+	EtcdRoutingTable(String[] locations) {
+		this.locations = locations.clone();
+		this.bases = new String[locations.length];
+		this.states = EtcdMemberState.create(locations.length);
+		this.statistics = new EtcdMemberStatistics[locations.length];
+		for (int i = 0; i < locations.length; i++) {
+			bases[i] = EtcdUris.base(locations[i]);
+			statistics[i] = new EtcdMemberStatistics();
+		}
+	}
+
+	/**
+	 * @return the number of members
+	 */
+	int size() {
+		return locations.length;
+	}
+
+	/**
+	 * @param member
+	 *            the index of the member
+	 * @return the location of the member
+	 */
+	String location(int member) {
+		return locations[index(member)];
+	}
+
+	/**
+	 * @return a copy of the locations of the members
+	 */
+	String[] locations() {
+		return locations.clone();
+	}
+
+	/**
+	 * @param member
+	 *            the index of the member
+	 * @return the statistics of the member
+	 */
+	EtcdMemberStatistics statistics(int member) {
+		return statistics[index(member)];
+	}
+
+	/**
+	 * @return the state of the member selector, same order as the locations
+	 */
+	EtcdMemberState[] states() {
+		return states;
+	}
+
+	/**
+	 * @param member
+	 *            the index of the member
+	 * @return the state of the member selector about the member
+	 */
+	EtcdMemberState state(int member) {
+		return states[index(member)];
+	}
+
+	/**
+	 * Returns the URI of the given target at the given member.
+	 * 
+	 * @param member
+	 *            the index of the member
+	 * @param target
+	 *            the request target relative to the base URI
+	 * @return the URI
+	 */
+	URI uri(int member, String target) {
+		return EtcdUris.uri(bases[index(member)], target);
+	}
+
+	/**
+	 * @param locations
+	 *            the locations
+	 * @return <code>true</code> if this table routes to exactly the given
+	 *         locations in any order
+	 */
+	boolean hasLocations(String[] locations) {
+		return locations.length == this.locations.length
+				&& new HashSet<>(Arrays.asList(this.locations)).equals(new HashSet<>(Arrays.asList(locations)));
+	}
+
+	/**
+	 * @return the array index of the given member
+	 * @throws IllegalStateException
+	 *             if the table is empty
+	 */
+	private int index(int member) {
+		if (locations.length == 0) {
+			throw new IllegalStateException("No etcd cluster member is known.");
+		}
+		return member % locations.length;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The etcd self statistics response object from statistics API.
+ * 
+ * @see <a href="https://coreos.com/etcd/docs/2.1.0/other_apis.html">https://
+ *      coreos.com/etcd/docs/2.1.0/other_apis.html</a>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EtcdSelfStats {
+
+	/**
+	 * identifier of the member
+	 */
+	private String id;
+
+	/**
+	 * name of the member
+	 */
+	private String name;
+
+	/**
+	 * raft state of the member, e.g. <code>StateLeader</code>
+	 */
+	private String state;
+
+	/**
+	 * information about the leader as seen by the member
+	 */
+	private EtcdLeaderInfo leaderInfo;
+
+}
@@ -0,0 +1,369 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Discovers the etcd cluster members using DNS SRV records of the given
+ * domain. The <code>_etcd-client._tcp</code> records are looked up first,
+ * using the advertised ports. If there are none, the
+ * <code>_etcd-server._tcp</code> records are used with the default client
+ * port, as they advertise the peer port.
+ * <p>
+ * The targets are ordered by priority and, within the same priority, randomly
+ * weighted by their weight as described in RFC 2782. Records with a malformed
+ * priority, weight or port are skipped. The locations are resolved again in
+ * the background every {@link #getRefreshInterval() refresh interval} and
+ * passed to the {@link #setClient(EtcdClient) client} if the members changed.
+ * <p>
+ * The order is only honoured while the client bootstraps from the locations.
+ * Afterwards the client's member selector picks among all members regardless
+ * of their priority and weight.
+ */
+@Slf4j
+public class EtcdSrvDiscovery implements InitializingBean, DisposableBean {
+
+	/**
+	 * default client port of etcd
+	 */
+	private static final int CLIENT_PORT = 2379;
+
+	/**
+	 * domain the SRV records are published for
+	 */
+	@Getter
+	private final String domain;
+
+	/**
+	 * interval in milliseconds between lookups of the SRV records
+	 */
+	@Getter
+	@Setter
+	private long refreshInterval = 60000;
+
+	/**
+	 * client the discovered locations are passed to
+	 */
+	@Getter
+	@Setter
+	private EtcdClient client;
+
+	/**
+	 * most recently discovered locations
+	 */
+	private volatile String[] locations;
+
+	/**
+	 * resolver of the SRV records in the background
+	 */
+	private ScheduledExecutorService resolver = Executors.newScheduledThreadPool(1, new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "etcd-srv-discovery");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Creates a new EtcdSrvDiscovery.
+	 * 
+	 * @param domain
+	 *            the domain the SRV records are published for
+	 */
+	public EtcdSrvDiscovery(String domain) {
+		this.domain = domain;
+	}
+
+	/**
+	 * Returns the discovered locations, looking up the SRV records on the
+	 * first call only.
+	 * 
+	 * @return the locations
+	 * @throws NamingException
+	 *             in case the SRV records could not be looked up
+	 */
+	public String[] getLocations() throws NamingException {
+		String[] locations = this.locations;
+		if (locations == null) {
+			locations = refresh();
+		}
+		return locations.clone();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Runnable worker = new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					refresh();
+				} catch (NamingException | RuntimeException e) {
+					log.warn("Could not look up etcd cluster members of " + domain + ".", e);
+				}
+			}
+		};
+		resolver.scheduleWithFixedDelay(worker, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() throws Exception {
+		resolver.shutdownNow();
+	}
+
+	/**
+	 * Looks up the SRV records and passes the locations to the client if the
+	 * members changed.
+	 * 
+	 * @return the locations
+	 * @throws NamingException
+	 *             in case the SRV records could not be looked up
+	 */
+	synchronized String[] refresh() throws NamingException {
+		List<String> locations = toLocations(lookup("_etcd-client._tcp." + domain), true);
+		if (locations.isEmpty()) {
+			locations = toLocations(lookup("_etcd-server._tcp." + domain), false);
+		}
+		if (locations.isEmpty()) {
+			throw new NameNotFoundException("No etcd cluster members found for " + domain + ".");
+		}
+
+		String[] previous = this.locations;
+		if (previous != null && new HashSet<>(Arrays.asList(previous)).equals(new HashSet<>(locations))) {
+			// keep the order, so the client keeps its statistics
+			return previous;
+		}
+
+		String[] discovered = locations.toArray(new String[locations.size()]);
+		this.locations = discovered;
+		log.info("Discovered etcd cluster members " + locations + " for " + domain + ".");
+
+		EtcdClient client = this.client;
+		if (client != null && previous != null) {
+			client.setLocations(discovered);
+		}
+		return discovered;
+	}
+
+	/**
+	 * Looks up the SRV records of the given name.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return the SRV records as text, e.g. <code>0 10 2379 etcd0.example.org.</code>
+	 * @throws NamingException
+	 *             in case the SRV records could not be looked up
+	 */
+	protected List<String> lookup(String name) throws NamingException {
+		Hashtable<String, String> env = new Hashtable<String, String>();
+		env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+		env.put("java.naming.provider.url", "dns:");
+		env.put("com.sun.jndi.dns.timeout.initial", "1000");
+		env.put("com.sun.jndi.dns.timeout.retries", "2");
+
+		List<String> records = new ArrayList<>();
+		DirContext context = new InitialDirContext(env);
+		try {
+			Attributes attributes = context.getAttributes(name, new String[] { "SRV" });
+			for (NamingEnumeration<? extends Attribute> attribute = attributes.getAll(); attribute.hasMore();) {
+				for (NamingEnumeration<?> values = attribute.next().getAll(); values.hasMore();) {
+					records.add(String.valueOf(values.next()));
+				}
+			}
+		} catch (NameNotFoundException e) {
+			log.debug("No SRV records found for " + name + ".");
+		} finally {
+			context.close();
+		}
+		return records;
+	}
+
+	/**
+	 * Converts the given SRV records to locations, ordered by priority and
+	 * weight.
+	 * 
+	 * @param records
+	 *            the SRV records
+	 * @param advertisedPort
+	 *            <code>true</code> if the port of the records should be used,
+	 *            <code>false</code> to use the default client port
+	 * @return the locations
+	 */
+	private static List<String> toLocations(List<String> records, boolean advertisedPort) {
+		List<SrvRecord> parsed = new ArrayList<>();
+		for (String record : records) {
+			String[] split = record.trim().split("\\s+");
+			int priority = split.length == 4 ? parseField(split[0]) : -1;
+			int weight = split.length == 4 ? parseField(split[1]) : -1;
+			int port = split.length == 4 ? parseField(split[2]) : -1;
+			if (priority < 0 || weight < 0 || port < 0) {
+				log.warn("Ignoring malformed SRV record " + record + ".");
+				continue;
+			}
+
+			String host = split[3];
+			if (host.endsWith(".")) {
+				host = host.substring(0, host.length() - 1);
+			}
+			parsed.add(new SrvRecord(priority, weight,
+					"http://" + host + ":" + (advertisedPort ? port : CLIENT_PORT)));
+		}
+
+		Collections.sort(parsed, new Comparator<SrvRecord>() {
+
+			@Override
+			public int compare(SrvRecord a, SrvRecord b) {
+				return Integer.compare(a.priority, b.priority);
+			}
+		});
+
+		List<String> locations = new ArrayList<>();
+		for (int from = 0; from < parsed.size();) {
+			int to = from;
+			while (to < parsed.size() && parsed.get(to).priority == parsed.get(from).priority) {
+				to++;
+			}
+			addWeighted(new ArrayList<>(parsed.subList(from, to)), locations);
+			from = to;
+		}
+		return locations;
+	}
+
+	/**
+	 * Parses a priority, weight or port field of an SRV record.
+	 * 
+	 * @param field
+	 *            the field
+	 * @return the value or <code>-1</code> if the field is not a number
+	 *         between 0 and 65535
+	 */
+	private static int parseField(String field) {
+		try {
+			int value = Integer.parseInt(field);
+			return value >= 0 && value <= 65535 ? value : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Adds the locations of the given records of the same priority in the
+	 * random order given by their weights, as described in RFC 2782.
+	 * 
+	 * @param records
+	 *            the records
+	 * @param locations
+	 *            the locations to add to
+	 */
+	private static void addWeighted(List<SrvRecord> records, List<String> locations) {
+		while (!records.isEmpty()) {
+			int total = 0;
+			for (SrvRecord record : records) {
+				total += record.weight;
+			}
+
+			int selected = 0;
+			if (total > 0) {
+				int value = ThreadLocalRandom.current().nextInt(total);
+				while (value >= records.get(selected).weight) {
+					value -= records.get(selected).weight;
+					selected++;
+				}
+			} else {
+				selected = ThreadLocalRandom.current().nextInt(records.size());
+			}
+
+			String location = records.remove(selected).location;
+			if (!locations.contains(location)) {
+				locations.add(location);
+			}
+		}
+	}
+
+	/**
+	 * A parsed SRV record.
+	 */
+	private static class SrvRecord {
+
+		/**
+		 * priority, lower values first
+		 */
+		private final int priority;
+
+		/**
+		 * relative weight among records of the same priority
+		 */
+		private final int weight;
+
+		/**
+		 * location of the target
+		 */
+		private final String location;
+
+		SrvRecord(int priority, int weight, String location) {
+			this.priority = priority;
+			this.weight = weight;
+			this.location = location;
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helper building the targets and form bodies of etcd requests without
+ * intermediate builders. Targets are relative to the base URI of a member,
+ * e.g. <code>/keys/sample?recursive=true</code>. Targets and bodies are
+ * assembled in buffers reused by the calling thread, so a target has to be
+ * converted to a string before the next target is started.
+ */
+final class EtcdUris {
+
+	/**
+	 * hexadecimal digits used for percent-encoding
+	 */
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * characters that are not encoded in query parameters and form fields
+	 */
+	private static final boolean[] UNRESERVED = new boolean[128];
+
+	/**
+	 * characters that are not encoded in keys
+	 */
+	private static final boolean[] PATH = new boolean[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			UNRESERVED[c] = true;
+			UNRESERVED[Character.toUpperCase(c)] = true;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			UNRESERVED[c] = true;
+		}
+		for (char c : "-._~".toCharArray()) {
+			UNRESERVED[c] = true;
+		}
+
+		System.arraycopy(UNRESERVED, 0, PATH, 0, UNRESERVED.length);
+		for (char c : "/!$&'()*+,;=:@".toCharArray()) {
+			PATH[c] = true;
+		}
+	}
+
+	/**
+	 * target buffer of the calling thread
+	 */
+	private static final ThreadLocal<StringBuilder> TARGET = new ThreadLocal<StringBuilder>() {
+
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	/**
+	 * body buffer of the calling thread
+	 */
+	private static final ThreadLocal<StringBuilder> BODY = new ThreadLocal<StringBuilder>() {
+
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	private EtcdUris() {
+		super();
+	}
+
+	/**
+	 * Returns the base URI of the member with the given location.
+	 * 
+	 * @param location
+	 *            the member's location
+	 * @return the base URI
+	 */
+	static String base(String location) {
+		return location.endsWith("/") ? location + "v2" : location + "/v2";
+	}
+
+	/**
+	 * Returns the URI of the given target at the given base URI.
+	 * 
+	 * @param base
+	 *            the base URI of a member
+	 * @param target
+	 *            the request target
+	 * @return the URI
+	 */
+	static URI uri(String base, String target) {
+		return URI.create(base.concat(target));
+	}
+
+	/**
+	 * Starts the target of a request for the node with the given key. Leading
+	 * slashes of the key are ignored, all other slashes separate path
+	 * segments.
+	 * 
+	 * @param key
+	 *            the node's key
+	 * @return the buffer containing the target
+	 */
+	static StringBuilder keys(String key) {
+		StringBuilder target = clear(TARGET).append("/keys/");
+		int start = 0;
+		while (start < key.length() && key.charAt(start) == '/') {
+			start++;
+		}
+		appendEncoded(target, key, start, PATH, false);
+		return target;
+	}
+
+	/**
+	 * Starts the target of a request for the cluster members.
+	 * 
+	 * @return the buffer containing the target
+	 */
+	static StringBuilder members() {
+		return clear(TARGET).append("/members");
+	}
+
+	/**
+	 * Starts the target of a request for the statistics of the member.
+	 * 
+	 * @return the buffer containing the target
+	 */
+	static StringBuilder selfStats() {
+		return clear(TARGET).append("/stats/self");
+	}
+
+	/**
+	 * Appends a query parameter to the given target.
+	 * 
+	 * @param target
+	 *            the target
+	 * @param name
+	 *            the parameter name
+	 * @param value
+	 *            the parameter value
+	 * @return the target
+	 */
+	static StringBuilder param(StringBuilder target, String name, String value) {
+		appendEncoded(separator(target).append(name).append('='), value, 0, UNRESERVED, false);
+		return target;
+	}
+
+	/**
+	 * Appends a query parameter to the given target.
+	 * 
+	 * @param target
+	 *            the target
+	 * @param name
+	 *            the parameter name
+	 * @param value
+	 *            the parameter value
+	 * @return the target
+	 */
+	static StringBuilder param(StringBuilder target, String name, int value) {
+		separator(target).append(name).append('=').append(value);
+		return target;
+	}
+
+	/**
+	 * Appends a query parameter to the given target.
+	 * 
+	 * @param target
+	 *            the target
+	 * @param name
+	 *            the parameter name
+	 * @param value
+	 *            the parameter value
+	 * @return the target
+	 */
+	static StringBuilder param(StringBuilder target, String name, boolean value) {
+		separator(target).append(name).append('=').append(value);
+		return target;
+	}
+
+	/**
+	 * Appends a time-to-live query parameter to the given target, leaving the
+	 * value empty for <code>-1</code> to unset an existing time-to-live.
+	 * 
+	 * @param target
+	 *            the target
+	 * @param ttl
+	 *            the time-to-live
+	 * @return the target
+	 */
+	static StringBuilder ttl(StringBuilder target, int ttl) {
+		return ttl == -1 ? param(target, "ttl", "") : param(target, "ttl", ttl);
+	}
+
+	/**
+	 * Returns a form body with a single field.
+	 * 
+	 * @param name
+	 *            the field name
+	 * @param value
+	 *            the field value
+	 * @return the form-encoded body
+	 */
+	static byte[] form(String name, String value) {
+		StringBuilder body = clear(BODY);
+		appendField(body, name, value);
+		return body.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Returns a form body with two fields.
+	 * 
+	 * @param name1
+	 *            the first field name
+	 * @param value1
+	 *            the first field value
+	 * @param name2
+	 *            the second field name
+	 * @param value2
+	 *            the second field value
+	 * @return the form-encoded body
+	 */
+	static byte[] form(String name1, String value1, String name2, String value2) {
+		StringBuilder body = clear(BODY);
+		appendField(body, name1, value1);
+		appendField(body.append('&'), name2, value2);
+		return body.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Returns the given buffer of the calling thread after clearing it.
+	 */
+	private static StringBuilder clear(ThreadLocal<StringBuilder> buffers) {
+		StringBuilder buffer = buffers.get();
+		buffer.setLength(0);
+		return buffer;
+	}
+
+	/**
+	 * Appends the separator of the next query parameter to the given target.
+	 */
+	private static StringBuilder separator(StringBuilder target) {
+		return target.append(target.indexOf("?") < 0 ? '?' : '&');
+	}
+
+	/**
+	 * Appends a form-encoded field to the given body.
+	 */
+	private static void appendField(StringBuilder body, String name, String value) {
+		appendEncoded(body, name, 0, UNRESERVED, true);
+		appendEncoded(body.append('='), value, 0, UNRESERVED, true);
+	}
+
+	/**
+	 * Appends the given string to the given buffer, percent-encoding the UTF-8
+	 * bytes of all characters that are not allowed.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param s
+	 *            the string
+	 * @param start
+	 *            the index of the first character to append
+	 * @param allowed
+	 *            the ASCII characters that are appended as they are
+	 * @param form
+	 *            <code>true</code> if spaces should be encoded as
+	 *            <code>+</code>
+	 */
+	private static void appendEncoded(StringBuilder buffer, String s, int start, boolean[] allowed, boolean form) {
+		for (int i = start; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 128 && allowed[c]) {
+				buffer.append(c);
+			} else if (c == ' ' && form) {
+				buffer.append('+');
+			} else if (c < 0x80) {
+				appendByte(buffer, c);
+			} else if (c < 0x800) {
+				appendByte(buffer, 0xC0 | (c >> 6));
+				appendByte(buffer, 0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				appendByte(buffer, 0xF0 | (codePoint >> 18));
+				appendByte(buffer, 0x80 | ((codePoint >> 12) & 0x3F));
+				appendByte(buffer, 0x80 | ((codePoint >> 6) & 0x3F));
+				appendByte(buffer, 0x80 | (codePoint & 0x3F));
+			} else {
+				appendByte(buffer, 0xE0 | (c >> 12));
+				appendByte(buffer, 0x80 | ((c >> 6) & 0x3F));
+				appendByte(buffer, 0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Appends the given byte percent-encoded to the given buffer.
+	 */
+	private static void appendByte(StringBuilder buffer, int b) {
+		buffer.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+	}
+}
@@ -0,0 +1,347 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A watch on a node in etcd that long-polls the node for changes and notifies
+ * a listener about each change. The watch resumes from the modified index of
+ * the last change and re-reads the node if etcd already cleared the requested
+ * index from its event history. Reads resume from the etcd index of the
+ * response, and a re-read only notifies the listener if the node changed since
+ * the state the listener already knows.
+ */
+@Slf4j
+public class EtcdWatch implements Runnable {
+
+	/**
+	 * minimum delay between two failed attempts in milliseconds
+	 */
+	private static final long MIN_BACKOFF = 100;
+
+	/**
+	 * maximum delay between two failed attempts in milliseconds
+	 */
+	private static final long MAX_BACKOFF = 10000;
+
+	/**
+	 * client
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * key
+	 */
+	private final String key;
+
+	/**
+	 * indicates whether child nodes are watched
+	 */
+	private final boolean recursive;
+
+	/**
+	 * listener
+	 */
+	private final EtcdListener listener;
+
+	/**
+	 * index to wait for
+	 */
+	private volatile int waitIndex;
+
+	/**
+	 * maximum modified index of the state known to the listener
+	 */
+	private int knownIndex;
+
+	/**
+	 * number of nodes of the state known to the listener, <code>0</code> if
+	 * the node is known to be absent or <code>-1</code> if unknown
+	 */
+	private int knownCount = -1;
+
+	/**
+	 * indicates whether the watch is cancelled
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * indicates whether the last attempt to watch failed
+	 */
+	private volatile boolean failing = false;
+
+	/**
+	 * Creates a new EtcdWatch.
+	 * 
+	 * @param client
+	 *            the client
+	 * @param key
+	 *            the node's key
+	 * @param waitIndex
+	 *            the index to start watching from or <code>0</code> to start
+	 *            watching from the node's current state
+	 * @param recursive
+	 *            <code>true</code> if child nodes should be watched,
+	 *            <code>false</code> otherwise
+	 * @param listener
+	 *            the listener
+	 */
+	EtcdWatch(EtcdClient client, String key, int waitIndex, boolean recursive, EtcdListener listener) {
+		this.client = client;
+		this.key = key;
+		this.waitIndex = waitIndex;
+		this.recursive = recursive;
+		this.listener = listener;
+	}
+
+	/**
+	 * @return the watched key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return <code>true</code> if child nodes are watched, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean isRecursive() {
+		return recursive;
+	}
+
+	/**
+	 * @return the index the watch waits for
+	 */
+	public int getWaitIndex() {
+		return waitIndex;
+	}
+
+	/**
+	 * @return <code>true</code> if the watch is cancelled, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return <code>true</code> if the last attempt to watch the node failed
+	 *         and changes might currently be missed, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean isFailing() {
+		return failing;
+	}
+
+	/**
+	 * Cancels the watch. The listener is not notified anymore, the pending
+	 * long-poll ends with the next change or timeout.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see Runnable#run()
+	 */
+	@Override
+	public void run() {
+		int failures = 0;
+
+		while (!cancelled && !Thread.currentThread().isInterrupted() && hasDemand()) {
+			try {
+				if (waitIndex == 0) {
+					waitIndex = read(false);
+				} else {
+					EtcdResponse response = client.watch(key, waitIndex, recursive);
+					if (response != null && response.getNode() != null) {
+						waitIndex = response.getNode().getModifiedIndex() + 1;
+						knownIndex = Math.max(knownIndex, response.getNode().getModifiedIndex());
+						knownCount = -1;
+						notify(response);
+					}
+				}
+				failures = 0;
+				failing = false;
+			} catch (EtcdException e) {
+				if (e.getError() != null && e.getError().getErrorCode() == EtcdErrorCodes.ECODE_EVENT_INDEX_CLEARED) {
+					log.debug("Event index " + waitIndex + " of " + key + " was cleared, re-reading node.");
+					try {
+						waitIndex = Math.max(e.getError().getIndex() + 1, read(true));
+						failures = 0;
+						failing = false;
+						continue;
+					} catch (EtcdException | RuntimeException ex) {
+						log.warn("Could not re-read " + key + ".", ex);
+					}
+				} else {
+					log.warn("Could not watch " + key + ".", e);
+				}
+				failures = backoff(failures);
+			} catch (RuntimeException e) {
+				log.warn("Could not watch " + key + ".", e);
+				failures = backoff(failures);
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether the listener is ready to receive further changes. The
+	 * watch stops polling and {@link #run()} returns as soon as there is no
+	 * demand anymore.
+	 * 
+	 * @return <code>true</code> if the watch should continue polling,
+	 *         <code>false</code> otherwise
+	 */
+	boolean hasDemand() {
+		return true;
+	}
+
+	/**
+	 * Reads the current state of the node and returns the index to resume
+	 * watching from, which follows the etcd index of the response so that
+	 * changes of other keys between the last change of the node and the read
+	 * are not replayed.
+	 * 
+	 * @param notify
+	 *            <code>true</code> if the listener should be notified about the
+	 *            current state in case it changed since the state the listener
+	 *            knows, <code>false</code> otherwise
+	 * @return the index to resume watching from
+	 * @throws EtcdException
+	 *             in case etcd returned an error
+	 */
+	private int read(boolean notify) throws EtcdException {
+		try {
+			EtcdResponse response = client.read(key, recursive);
+			int index = maxModifiedIndex(response.getNode());
+			int count = countNodes(response.getNode());
+			if (notify && (index != knownIndex || count != knownCount)) {
+				notify(response);
+			}
+			knownIndex = index;
+			knownCount = count;
+			return Math.max(response.getEtcdIndex(), index) + 1;
+		} catch (EtcdException e) {
+			if (e.getError() == null || e.getError().getErrorCode() != EtcdErrorCodes.ECODE_KEY_NOT_FOUND) {
+				throw e;
+			}
+
+			if (notify && knownCount != 0) {
+				EtcdNode node = new EtcdNode();
+				node.setKey(EtcdKeys.normalize(key));
+				node.setModifiedIndex(e.getError().getIndex());
+				notify(new EtcdResponse("delete", node, null));
+			}
+			knownCount = 0;
+			return e.getError().getIndex() + 1;
+		}
+	}
+
+	/**
+	 * Notifies the listener about the given change unless the watch is
+	 * cancelled.
+	 * 
+	 * @param response
+	 *            the change
+	 */
+	private void notify(EtcdResponse response) {
+		if (cancelled) {
+			return;
+		}
+
+		try {
+			listener.onChange(response);
+		} catch (RuntimeException e) {
+			log.error("Listener failed to process change of " + key + ".", e);
+		}
+	}
+
+	/**
+	 * Waits before the next attempt after the given number of failures.
+	 * 
+	 * @param failures
+	 *            the number of failures so far
+	 * @return the number of failures including the current one
+	 */
+	private int backoff(int failures) {
+		failing = true;
+
+		long delay = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(failures, 16));
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return failures + 1;
+	}
+
+	/**
+	 * Returns the maximum modified index of the given node and its children.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the maximum modified index
+	 */
+	static int maxModifiedIndex(EtcdNode node) {
+		if (node == null) {
+			return 0;
+		}
+
+		int index = node.getModifiedIndex();
+		if (node.getNodes() != null) {
+			for (EtcdNode child : node.getNodes()) {
+				index = Math.max(index, maxModifiedIndex(child));
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of nodes of the given node and its children. Together
+	 * with the maximum modified index it identifies a state of the node: every
+	 * update raises the modified index and every deletion without a following
+	 * update reduces the number of nodes.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the number of nodes
+	 */
+	static int countNodes(EtcdNode node) {
+		if (node == null) {
+			return 0;
+		}
+
+		int count = 1;
+		if (node.getNodes() != null) {
+			for (EtcdNode child : node.getNodes()) {
+				count += countNodes(child);
+			}
+		}
+		return count;
+	}
+}
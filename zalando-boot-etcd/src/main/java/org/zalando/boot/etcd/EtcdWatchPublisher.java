@@ -0,0 +1,248 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * A Reactive Streams publisher of the changes of a node in etcd. Every
+ * subscriber gets its own {@link EtcdWatch} that only long-polls etcd while
+ * the subscriber has outstanding demand, so a slow subscriber pauses the watch
+ * instead of having changes buffered for it. The stream never completes on its
+ * own, it ends when the subscription is cancelled.
+ */
+public class EtcdWatchPublisher implements Publisher<EtcdResponse> {
+
+	/**
+	 * client
+	 */
+	private final EtcdClient client;
+
+	/**
+	 * key
+	 */
+	private final String key;
+
+	/**
+	 * index of the first change
+	 */
+	private final int waitIndex;
+
+	/**
+	 * indicates whether child nodes are watched
+	 */
+	private final boolean recursive;
+
+	/**
+	 * Creates a new EtcdWatchPublisher publishing all changes after the node's
+	 * current state.
+	 * 
+	 * @param client
+	 *            the client
+	 * @param key
+	 *            the node's key
+	 * @param recursive
+	 *            <code>true</code> if changes of child nodes should be
+	 *            published, <code>false</code> otherwise
+	 */
+	public EtcdWatchPublisher(EtcdClient client, String key, boolean recursive) {
+		this(client, key, 0, recursive);
+	}
+
+	/**
+	 * Creates a new EtcdWatchPublisher publishing all changes starting with the
+	 * given index.
+	 * 
+	 * @param client
+	 *            the client
+	 * @param key
+	 *            the node's key
+	 * @param waitIndex
+	 *            the index of the first change to publish or <code>0</code>
+	 *            to start after the node's current state
+	 * @param recursive
+	 *            <code>true</code> if changes of child nodes should be
+	 *            published, <code>false</code> otherwise
+	 */
+	public EtcdWatchPublisher(EtcdClient client, String key, int waitIndex, boolean recursive) {
+		this.client = client;
+		this.key = key;
+		this.waitIndex = waitIndex;
+		this.recursive = recursive;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see Publisher#subscribe(Subscriber)
+	 */
+	@Override
+	public void subscribe(Subscriber<? super EtcdResponse> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber must not be null");
+		}
+
+		subscriber.onSubscribe(new WatchSubscription(subscriber));
+	}
+
+	/**
+	 * Adds the given demand to the given requested amount, capped at
+	 * {@link Long#MAX_VALUE}.
+	 * 
+	 * @param requested
+	 *            the requested amount
+	 * @param n
+	 *            the additional demand
+	 * @return the requested amount before the addition
+	 */
+	static long addDemand(AtomicLong requested, long n) {
+		while (true) {
+			long current = requested.get();
+			if (current == Long.MAX_VALUE) {
+				return current;
+			}
+
+			long next = current + n;
+			if (next < 0) {
+				next = Long.MAX_VALUE;
+			}
+			if (requested.compareAndSet(current, next)) {
+				return current;
+			}
+		}
+	}
+
+	/**
+	 * Subscription polling etcd on behalf of a single subscriber.
+	 */
+	private class WatchSubscription implements Subscription, EtcdListener, Runnable {
+
+		/**
+		 * subscriber
+		 */
+		private final Subscriber<? super EtcdResponse> subscriber;
+
+		/**
+		 * outstanding demand
+		 */
+		private final AtomicLong requested = new AtomicLong();
+
+		/**
+		 * indicates whether the watch is currently polling
+		 */
+		private final AtomicBoolean running = new AtomicBoolean();
+
+		/**
+		 * error for an invalid amount requested by the subscriber, if any,
+		 * signalled by the polling thread
+		 */
+		private volatile IllegalArgumentException invalidRequest;
+
+		/**
+		 * indicates whether the invalid request was signalled
+		 */
+		private final AtomicBoolean invalidRequestSignalled = new AtomicBoolean();
+
+		/**
+		 * watch
+		 */
+		private final EtcdWatch watch;
+
+		WatchSubscription(Subscriber<? super EtcdResponse> subscriber) {
+			this.subscriber = subscriber;
+			this.watch = new EtcdWatch(client, key, waitIndex, recursive, this) {
+
+				@Override
+				boolean hasDemand() {
+					return requested.get() > 0;
+				}
+			};
+		}
+
+		@Override
+		public void request(long n) {
+			if (watch.isCancelled()) {
+				return;
+			}
+			if (n <= 0) {
+				// signalled after the last change, so the signals stay serial
+				invalidRequest = new IllegalArgumentException("requested amount must be positive, was " + n);
+				watch.cancel();
+				if (running.compareAndSet(false, true)) {
+					client.getWatchExecutor().execute(this);
+				}
+				return;
+			}
+
+			if (addDemand(requested, n) == 0) {
+				schedule();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			watch.cancel();
+		}
+
+		@Override
+		public void onChange(EtcdResponse response) {
+			if (requested.get() != Long.MAX_VALUE) {
+				requested.decrementAndGet();
+			}
+			subscriber.onNext(response);
+		}
+
+		@Override
+		public void run() {
+			try {
+				watch.run();
+			} finally {
+				running.set(false);
+				IllegalArgumentException invalidRequest = this.invalidRequest;
+				if (invalidRequest != null) {
+					if (invalidRequestSignalled.compareAndSet(false, true)) {
+						subscriber.onError(invalidRequest);
+					}
+				} else if (requested.get() > 0) {
+					schedule();
+				}
+			}
+		}
+
+		/**
+		 * Resumes polling unless it is already in progress or the watch is
+		 * cancelled.
+		 */
+		private void schedule() {
+			if (!watch.isCancelled() && running.compareAndSet(false, true)) {
+				client.getWatchExecutor().execute(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.RestTemplate;
+
+public class CachingEtcdClientTest {
+
+	/**
+	 * client
+	 */
+	private CachingEtcdClient client = new CachingEtcdClient("http://localhost:2379");
+
+	/**
+	 * server
+	 */
+	private MockRestServiceServer server;
+
+	@Before
+	public void before() throws Exception {
+		RestTemplate template = new RestTemplate();
+		server = MockRestServiceServer.createServer(template);
+
+		ReflectionTestUtils.setField(client, "template", template);
+		client.setCacheRoot("/");
+	}
+
+	@Test
+	public void getFromCache() throws EtcdException {
+		expectGet("sample", "EtcdClientTest_get.json");
+
+		EtcdResponse response = client.get("sample");
+		Assert.assertSame("response", response, client.get("sample"));
+		Assert.assertEquals("hits", 1, client.getHitCount());
+		Assert.assertEquals("misses", 1, client.getMissCount());
+		Assert.assertEquals("size", 1, client.getSize());
+
+		server.verify();
+	}
+
+	@Test
+	public void getAfterPut() throws EtcdException {
+		expectGet("sample", "EtcdClientTest_get.json");
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.PUT)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_set.json"), MediaType.APPLICATION_JSON));
+		expectGet("sample", "EtcdClientTest_get.json");
+
+		client.get("sample");
+		client.put("sample", "Hello world");
+		client.get("sample");
+		Assert.assertEquals("hits", 0, client.getHitCount());
+		Assert.assertEquals("misses", 2, client.getMissCount());
+
+		server.verify();
+	}
+
+	@Test
+	public void getAfterChangeOfChild() throws EtcdException {
+		expectGet("dir?recursive=true", "EtcdClientTest_get_recursive.json");
+		expectGet("dir?recursive=true", "EtcdClientTest_get_recursive.json");
+
+		client.get("dir", true);
+		client.invalidate("/dir/a/b");
+		client.get("dir", true);
+		Assert.assertEquals("misses", 2, client.getMissCount());
+
+		server.verify();
+	}
+
+	@Test
+	public void getWithEviction() throws EtcdException {
+		client.setMaximumSize(1);
+		expectGet("first", "EtcdClientTest_get.json");
+		expectGet("second", "EtcdClientTest_get.json");
+		expectGet("first", "EtcdClientTest_get.json");
+
+		client.get("first");
+		client.get("second");
+		client.get("first");
+		Assert.assertEquals("evictions", 2, client.getEvictionCount());
+		Assert.assertEquals("size", 1, client.getSize());
+
+		server.verify();
+	}
+
+	@Test
+	public void getWithExpiredNode() throws EtcdException {
+		expectGet("sample", "CachingEtcdClientTest_get_expired.json");
+		expectGet("sample", "CachingEtcdClientTest_get_expired.json");
+
+		client.get("sample");
+		client.get("sample");
+		Assert.assertEquals("hits", 0, client.getHitCount());
+		Assert.assertEquals("evictions", 1, client.getEvictionCount());
+
+		server.verify();
+	}
+
+	@Test
+	public void getWithoutCacheRoot() throws EtcdException {
+		client.setCacheRoot(null);
+		expectGet("sample", "EtcdClientTest_get.json");
+		expectGet("sample", "EtcdClientTest_get.json");
+
+		client.get("sample");
+		client.get("sample");
+		Assert.assertEquals("hits", 0, client.getHitCount());
+		Assert.assertEquals("size", 0, client.getSize());
+
+		server.verify();
+	}
+
+	@Test
+	public void getOutsideOfCacheRoot() throws EtcdException {
+		client.setCacheRoot("config");
+		expectGet("sample", "EtcdClientTest_get.json");
+		expectGet("sample", "EtcdClientTest_get.json");
+
+		client.get("sample");
+		client.get("sample");
+		Assert.assertEquals("size", 0, client.getSize());
+
+		server.verify();
+	}
+
+	@Test
+	public void getFromLaggingMember() throws EtcdException {
+		expectGet("sample", "EtcdClientTest_get.json", 5);
+		expectGet("sample", "EtcdClientTest_get.json", 10);
+
+		// the watch applied a change the member had not seen yet
+		client.invalidate("/sample", 10);
+		client.get("sample");
+		Assert.assertEquals("size", 0, client.getSize());
+		client.get("sample");
+		Assert.assertEquals("size", 1, client.getSize());
+
+		server.verify();
+	}
+
+	@Test
+	public void getWhileSiblingsChange() throws EtcdException {
+		expectGet("dir/a", "EtcdClientTest_get.json", 5);
+		expectGet("dir?recursive=true", "EtcdClientTest_get_recursive.json", 5);
+		expectGet("dir?recursive=true", "EtcdClientTest_get_recursive.json", 20);
+
+		client.invalidate("/dir/b", 20);
+		client.get("dir/a");
+		Assert.assertEquals("size", 1, client.getSize());
+		client.get("dir", true);
+		Assert.assertEquals("size", 1, client.getSize());
+		client.get("dir", true);
+		Assert.assertEquals("size", 2, client.getSize());
+
+		server.verify();
+	}
+
+	private void expectGet(String key, String resource) {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/" + key))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource(resource), MediaType.APPLICATION_JSON));
+	}
+
+	private void expectGet(String key, String resource, int etcdIndex) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-Etcd-Index", String.valueOf(etcdIndex));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/" + key))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource(resource),
+						MediaType.APPLICATION_JSON).headers(headers));
+	}
+}
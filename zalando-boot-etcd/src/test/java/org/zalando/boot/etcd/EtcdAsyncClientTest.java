@@ -0,0 +1,237 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.ResourceAccessException;
+
+public class EtcdAsyncClientTest {
+
+	/**
+	 * client
+	 */
+	private EtcdAsyncClient client = new EtcdAsyncClient(
+			new String[] { "http://localhost:2379", "http://localhost:2380" });
+
+	/**
+	 * server
+	 */
+	private MockRestServiceServer server;
+
+	@Before
+	public void before() throws Exception {
+		AsyncRestTemplate template = new AsyncRestTemplate();
+		server = MockRestServiceServer.createServer(template);
+
+		ReflectionTestUtils.setField(client, "template", template);
+	}
+
+	@Test
+	public void get() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+
+		EtcdResponse response = client.get("sample").get();
+		Assert.assertNotNull("response", response);
+		Assert.assertEquals("action", "get", response.getAction());
+
+		server.verify();
+	}
+
+	@Test
+	public void getWithError() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.NOT_FOUND)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdClientTest_get_error.json")));
+
+		try {
+			client.get("sample").get();
+			Assert.fail("exception expected");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("cause", e.getCause() instanceof EtcdException);
+			Assert.assertEquals("error code", EtcdErrorCodes.ECODE_TEST_FAILED,
+					((EtcdException) e.getCause()).getError().getErrorCode());
+		} finally {
+			server.verify();
+		}
+	}
+
+	@Test
+	public void getWithRetry() throws Exception {
+		client.setRetryDuration(10000);
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						MockClientHttpResponse response = new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+							@Override
+							public InputStream getBody() throws IOException {
+								throw new IOException("connection reset");
+							}
+						};
+						response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+						return response;
+					}
+				});
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+
+		EtcdResponse response = client.get("sample").get();
+		Assert.assertNotNull("response", response);
+
+		server.verify();
+	}
+
+	@Test
+	public void getWithRetryCount() throws Exception {
+		client.setRetryCount(1);
+		client.setRetryDuration(10000);
+
+		ResponseCreator unreachable = new ResponseCreator() {
+
+			@Override
+			public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+				return new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+					@Override
+					public InputStream getBody() throws IOException {
+						throw new IOException("connection reset");
+					}
+				};
+			}
+		};
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andRespond(unreachable);
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andRespond(unreachable);
+
+		try {
+			client.get("sample").get();
+			Assert.fail("exception expected");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("cause", e.getCause() instanceof ResourceAccessException);
+		} finally {
+			server.verify();
+		}
+	}
+
+	@Test
+	public void getReportsFailureToClient() throws Exception {
+		EtcdClient etcdClient = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client = new EtcdAsyncClient(etcdClient);
+		client.setRetryDuration(10000);
+		before();
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						return new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+							@Override
+							public InputStream getBody() throws IOException {
+								throw new IOException("connection reset");
+							}
+						};
+					}
+				});
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource("EtcdClientTest_get.json"),
+						MediaType.APPLICATION_JSON));
+
+		Assert.assertNotNull("response", client.get("sample").get());
+		server.verify();
+
+		EtcdRoutingTable routing = etcdClient.getRoutingTable();
+		Assert.assertEquals("failures", 1, routing.statistics(0).getFailures());
+		Assert.assertFalse("healthy", routing.state(0).isHealthy());
+	}
+
+	@Test
+	public void putToLeaderOfClient() throws Exception {
+		EtcdClient etcdClient = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		ReflectionTestUtils.setField(etcdClient, "leaderBase", "http://localhost:2380/v2");
+		client = new EtcdAsyncClient(etcdClient);
+		before();
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.PUT))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource("EtcdClientTest_set.json"),
+						MediaType.APPLICATION_JSON));
+
+		Assert.assertNotNull("response", client.put("sample", "value").get());
+		server.verify();
+	}
+
+	@Test
+	public void getWithoutLocations() throws Exception {
+		try {
+			new EtcdAsyncClient(new String[0]).get("sample").get();
+			Assert.fail("exception expected");
+		} catch (ExecutionException e) {
+			Assert.assertTrue("cause", e.getCause() instanceof EtcdException);
+		}
+	}
+
+	@Test
+	public void put() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.PUT))
+				.andExpect(MockRestRequestMatchers.content().string("value=Hello+world"))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource("EtcdClientTest_set.json"),
+						MediaType.APPLICATION_JSON));
+
+		EtcdResponse response = client.put("sample", "Hello world").get();
+		Assert.assertNotNull("response", response);
+
+		server.verify();
+	}
+}
@@ -23,17 +23,46 @@
  */
 package org.zalando.boot.etcd;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.RequestMatcher;
+import org.springframework.test.web.client.ResponseCreator;
 import org.springframework.test.web.client.match.MockRestRequestMatchers;
 import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 public class EtcdClientTest {
@@ -54,6 +83,7 @@ public class EtcdClientTest {
 		server = MockRestServiceServer.createServer(template);
 
 		ReflectionTestUtils.setField(client, "template", template);
+		ReflectionTestUtils.setField(client, "watchTemplate", template);
 	}
 
 	@Test
@@ -83,6 +113,34 @@ public class EtcdClientTest {
 		}
 	}
 
+	@Test
+	public void getWithServerErrorOpensCircuitBreaker() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.NOT_FOUND)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdClientTest_get.json")));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andRespond(MockRestResponseCreators.withServerError());
+
+		try {
+			client.get("sample");
+			Assert.fail("key found");
+		} catch (EtcdException e) {
+			Assert.assertEquals("etcd error", AbstractEtcdMemberSelector.State.CLOSED,
+					client.getClusterStatus().getMembers().get(0).getState());
+		}
+
+		try {
+			client.get("sample");
+			Assert.fail("server error ignored");
+		} catch (EtcdException e) {
+			Assert.assertEquals("server error", AbstractEtcdMemberSelector.State.OPEN,
+					client.getClusterStatus().getMembers().get(0).getState());
+		}
+
+		server.verify();
+	}
+
 	@Test
 	public void getRecursive() throws EtcdException {
 		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?recursive=true"))
@@ -392,4 +450,815 @@ public class EtcdClientTest {
 
 		server.verify();
 	}
+
+	@Test
+	public void putToLeader() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/members"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_members.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/stats/self"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(
+						new ClassPathResource("EtcdClientTest_stats_self.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.PUT))
+				.andExpect(MockRestRequestMatchers.content().string("value=Hello+world"))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource("EtcdClientTest_set.json"),
+						MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+
+		Assert.assertEquals("leader", "http://localhost:2380", client.discoverLeader());
+		Assert.assertNotNull("response", client.put("sample", "Hello world"));
+		Assert.assertNotNull("response", client.get("sample"));
+
+		server.verify();
+	}
+
+	@Test
+	public void visit() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_visit.json"), MediaType.APPLICATION_JSON));
+
+		final List<EtcdNode> nodes = new ArrayList<>();
+		int visited = client.visit("config", new EtcdVisitor() {
+
+			@Override
+			public void visit(EtcdNode node) {
+				nodes.add(node);
+			}
+		});
+
+		Assert.assertEquals("visited", 2, visited);
+		Assert.assertEquals("first key", "/config/a", nodes.get(0).getKey());
+		Assert.assertEquals("first value", "a", nodes.get(0).getValue());
+		Assert.assertEquals("first modified index", 3, nodes.get(0).getModifiedIndex());
+		Assert.assertEquals("second key", "/config/b/c", nodes.get(1).getKey());
+		Assert.assertEquals("second value", "c", nodes.get(1).getValue());
+		Assert.assertNull("children", nodes.get(1).getNodes());
+
+		server.verify();
+	}
+
+	@Test(expected = EtcdException.class)
+	public void visitWithError() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.NOT_FOUND)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdClientTest_get_error.json")));
+
+		try {
+			client.visit("config", new EtcdVisitor() {
+
+				@Override
+				public void visit(EtcdNode node) {
+					Assert.fail("visited " + node);
+				}
+			});
+		} finally {
+			server.verify();
+		}
+	}
+
+	@Test
+	public void visitDoesNotRetryPartialListing() throws EtcdException {
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setRetryDuration(1000);
+		RestTemplate template = new RestTemplate();
+		MockRestServiceServer server = MockRestServiceServer.createServer(template);
+		ReflectionTestUtils.setField(client, "template", template);
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess("{\"action\":\"get\",\"node\":{\"key\":\"/config\","
+						+ "\"dir\":true,\"nodes\":[{\"key\":\"/config/a\",\"value\":\"a\"},{\"key\":\"/con",
+						MediaType.APPLICATION_JSON));
+
+		final List<EtcdNode> nodes = new ArrayList<>();
+		try {
+			client.visit("config", new EtcdVisitor() {
+
+				@Override
+				public void visit(EtcdNode node) {
+					nodes.add(node);
+				}
+			});
+			Assert.fail("truncated listing accepted");
+		} catch (ResourceAccessException e) {
+			Assert.assertEquals("visited", 1, nodes.size());
+		}
+
+		server.verify();
+	}
+
+	@Test
+	public void getRetriesWithinRetryDuration() throws EtcdException {
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setRetryDuration(1000);
+		RestTemplate template = new RestTemplate();
+		MockRestServiceServer server = MockRestServiceServer.createServer(template);
+		ReflectionTestUtils.setField(client, "template", template);
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						return new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+							@Override
+							public HttpStatus getStatusCode() throws IOException {
+								throw new IOException("connection refused");
+							}
+						};
+					}
+				});
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+
+		Assert.assertEquals(0, client.getRetryCount());
+		Assert.assertNotNull(client.get("sample"));
+
+		server.verify();
+	}
+
+	@Test
+	public void getAvoidsUnreachableMember() throws EtcdException {
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setRetryCount(1);
+		client.setRetryDuration(1000);
+		RestTemplate template = new RestTemplate();
+		MockRestServiceServer server = MockRestServiceServer.createServer(template);
+		ReflectionTestUtils.setField(client, "template", template);
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						return new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+							@Override
+							public HttpStatus getStatusCode() throws IOException {
+								throw new IOException("connection refused");
+							}
+						};
+					}
+				});
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+
+		Assert.assertNotNull(client.get("sample"));
+		Assert.assertNotNull(client.get("sample"));
+
+		server.verify();
+	}
+
+	@Test
+	public void getHedgesSlowRead() throws Exception {
+		final byte[] body = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_get.json").getInputStream());
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setHedgingEnabled(true);
+		client.setHedgeDelay(10);
+		client.setHedgePercentile(0);
+
+		final AtomicInteger requests = new AtomicInteger();
+		final CountDownLatch hedged = new CountDownLatch(1);
+		final Set<String> locations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		ReflectionTestUtils.setField(client, "template", new RestTemplate(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				locations.add(uri.getAuthority());
+				MockClientHttpResponse response;
+				if (requests.getAndIncrement() == 0) {
+					// the first request only answers after the read was hedged
+					response = new MockClientHttpResponse(body, HttpStatus.OK) {
+
+						@Override
+						public HttpStatus getStatusCode() throws IOException {
+							try {
+								hedged.await(5, TimeUnit.SECONDS);
+							} catch (InterruptedException e) {
+								throw new IOException("cancelled", e);
+							}
+							return super.getStatusCode();
+						}
+					};
+				} else {
+					hedged.countDown();
+					response = new MockClientHttpResponse(body, HttpStatus.OK);
+				}
+				response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				request.setResponse(response);
+				return request;
+			}
+		}));
+
+		Assert.assertNotNull(client.get("sample"));
+		Assert.assertEquals(1, client.getHedgedReadCount());
+		Assert.assertEquals(2, requests.get());
+		Assert.assertEquals(2, locations.size());
+	}
+
+	@Test
+	public void getSkipsHedgeWhileHedgeThreadsAreBusy() throws Exception {
+		final byte[] body = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_get.json").getInputStream());
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setHedgingEnabled(true);
+		client.setHedgeDelay(1);
+		client.setHedgePercentile(0);
+		// a single hedge thread is taken by the first read
+		ThreadPoolExecutor hedgeExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>());
+		ReflectionTestUtils.setField(client, "hedgeExecutor", hedgeExecutor);
+
+		final AtomicInteger requests = new AtomicInteger();
+		final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		ReflectionTestUtils.setField(client, "template", new RestTemplate(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				requests.incrementAndGet();
+				threads.add(Thread.currentThread().getName());
+				// answer slowly so that the read would be hedged
+				MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK) {
+
+					@Override
+					public HttpStatus getStatusCode() throws IOException {
+						try {
+							Thread.sleep(50);
+						} catch (InterruptedException e) {
+							throw new IOException("cancelled", e);
+						}
+						return super.getStatusCode();
+					}
+				};
+				response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				request.setResponse(response);
+				return request;
+			}
+		}));
+
+		try {
+			Assert.assertNotNull(client.get("sample"));
+			Assert.assertEquals(0, client.getHedgedReadCount());
+			Assert.assertEquals(1, requests.get());
+			Assert.assertFalse("read on the calling thread", threads.contains(Thread.currentThread().getName()));
+		} finally {
+			hedgeExecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void getDoesNotHedgeToEjectedMember() throws Exception {
+		final byte[] body = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_get.json").getInputStream());
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setHedgingEnabled(true);
+		client.setHedgeDelay(1);
+		client.setHedgePercentile(0);
+
+		EtcdRoutingTable routing = (EtcdRoutingTable) ReflectionTestUtils.getField(client, "routing");
+		routing.state(1).ejectedUntil.set(System.nanoTime() + TimeUnit.MINUTES.toNanos(1));
+
+		final Set<String> locations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		ReflectionTestUtils.setField(client, "template", new RestTemplate(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				locations.add(uri.getAuthority());
+				// answer slowly so that the read would be hedged
+				MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK) {
+
+					@Override
+					public HttpStatus getStatusCode() throws IOException {
+						try {
+							Thread.sleep(50);
+						} catch (InterruptedException e) {
+							throw new IOException("cancelled", e);
+						}
+						return super.getStatusCode();
+					}
+				};
+				response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				request.setResponse(response);
+				return request;
+			}
+		}));
+
+		Assert.assertNotNull(client.get("sample"));
+		Assert.assertEquals(0, client.getHedgedReadCount());
+		Assert.assertEquals(Collections.singleton("localhost:2379"), locations);
+	}
+
+	@Test
+	public void updateMembersProbesInParallel() throws Exception {
+		final byte[] members = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_members_probe.json").getInputStream());
+		EtcdClient client = new EtcdClient("http://localhost:2379");
+		client.setLeaderRoutingEnabled(false);
+		client.setProbeTimeout(500);
+		ReflectionTestUtils.setField(client, "template", new RestTemplate(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				if (uri.getPath().equals("/v2/members")) {
+					MockClientHttpResponse response = new MockClientHttpResponse(members, HttpStatus.OK);
+					response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+					request.setResponse(response);
+				} else if (uri.getPort() == 2380) {
+					// blackholed member
+					request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+						@Override
+						public HttpStatus getStatusCode() throws IOException {
+							try {
+								Thread.sleep(5000);
+							} catch (InterruptedException e) {
+								throw new IOException("interrupted", e);
+							}
+							return super.getStatusCode();
+						}
+					});
+				} else {
+					request.setResponse(
+							new MockClientHttpResponse("{\"etcdserver\":\"2.3.7\"}".getBytes(), HttpStatus.OK));
+				}
+				return request;
+			}
+		}));
+
+		long startTime = System.currentTimeMillis();
+		ReflectionTestUtils.invokeMethod(client, "updateMembers");
+
+		Assert.assertThat(System.currentTimeMillis() - startTime, Matchers.lessThan(2000L));
+		Assert.assertArrayEquals(
+				new String[] { "http://localhost:2379", "http://localhost:2380", "http://localhost:2381" },
+				client.getLocations());
+
+		// the blackholed member stays known, but is not selected
+		EtcdRoutingTable routing = (EtcdRoutingTable) ReflectionTestUtils.getField(client, "routing");
+		Assert.assertEquals("failures", 1, routing.statistics(1).getFailures());
+		Assert.assertFalse("healthy", routing.state(1).isHealthy());
+
+		// the selector state survives the next update of the same members
+		ReflectionTestUtils.invokeMethod(client, "updateMembers");
+		Assert.assertSame("routing", routing, ReflectionTestUtils.getField(client, "routing"));
+		Assert.assertEquals("failures", 2, routing.statistics(1).getFailures());
+	}
+
+	@Test
+	public void updateMembersBacksOffWhileStable() throws Exception {
+		final byte[] members = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_members.json").getInputStream());
+		final AtomicBoolean unreachable = new AtomicBoolean();
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setLeaderRoutingEnabled(false);
+		client.setUpdateInterval(20);
+		client.setMaxUpdateInterval(80);
+		client.setRequestFactory(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				if (uri.getPath().equals("/v2/members")) {
+					MockClientHttpResponse response = new MockClientHttpResponse(members, HttpStatus.OK);
+					response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+					request.setResponse(response);
+				} else if (uri.getPort() == 2380 && unreachable.get()) {
+					throw new IOException("connection refused");
+				} else {
+					request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+				}
+				return request;
+			}
+		});
+		client.afterPropertiesSet();
+
+		try {
+			awaitUpdateInterval(client, 80);
+			Assert.assertEquals(2, client.getLocations().length);
+
+			unreachable.set(true);
+			awaitUpdateInterval(client, 20);
+			Assert.assertEquals(2, client.getLocations().length);
+			Assert.assertThat(client.getClusterStatus().getMembers().get(1).getErrorRate(),
+					Matchers.greaterThan(0.0));
+		} finally {
+			client.destroy();
+		}
+	}
+
+	@Test
+	public void getClusterStatusReportsLastMemberUpdate() throws Exception {
+		final byte[] members = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_members.json").getInputStream());
+		final AtomicBoolean unreachable = new AtomicBoolean();
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setLeaderRoutingEnabled(false);
+		ReflectionTestUtils.setField(client, "template", new RestTemplate(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				if (unreachable.get() || uri.getPort() == 2380) {
+					throw new IOException("connection refused");
+				} else if (uri.getPath().equals("/v2/members")) {
+					MockClientHttpResponse response = new MockClientHttpResponse(members, HttpStatus.OK);
+					response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+					request.setResponse(response);
+				} else {
+					request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+				}
+				return request;
+			}
+		}));
+
+		EtcdClusterStatus status = client.getClusterStatus();
+		Assert.assertEquals("members before update", 2, status.getMembers().size());
+		Assert.assertNull("last update", status.getLastUpdate());
+		Assert.assertNull("probe latency before update", status.getMembers().get(0).getProbeLatency());
+
+		ReflectionTestUtils.invokeMethod(client, "updateMembers");
+
+		status = client.getClusterStatus();
+		Assert.assertNotNull("last update", status.getLastUpdate());
+		Assert.assertNull("last update error", status.getLastUpdateError());
+		Assert.assertEquals("members after update", 2, status.getMembers().size());
+		Assert.assertFalse("unreachable member healthy",
+				AbstractEtcdMemberSelector.State.CLOSED.equals(status.getMembers().get(1).getState()));
+		EtcdMemberStatus member = status.getMembers().get(0);
+		Assert.assertEquals("location", "http://localhost:2379", member.getLocation());
+		Assert.assertEquals("state", AbstractEtcdMemberSelector.State.CLOSED, member.getState());
+		Assert.assertNotNull("probe latency", member.getProbeLatency());
+		Assert.assertNotNull("latency", member.getLatency());
+		Assert.assertEquals("error rate", 0.0, member.getErrorRate(), 0.0);
+		// the listing of the members and the probe
+		Assert.assertEquals("requests", 2, member.getRequests());
+
+		unreachable.set(true);
+		try {
+			ReflectionTestUtils.invokeMethod(client, "updateMembers");
+			Assert.fail("update should fail");
+		} catch (ResourceAccessException e) {
+			// expected
+		}
+
+		status = client.getClusterStatus();
+		Assert.assertNotNull("last update error", status.getLastUpdateError());
+		Assert.assertNull("probe latency", status.getMembers().get(0).getProbeLatency());
+		Assert.assertThat("error rate", status.getMembers().get(0).getErrorRate(), Matchers.greaterThan(0.0));
+	}
+
+	private static void awaitUpdateInterval(EtcdClient client, long interval) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!Long.valueOf(interval).equals(ReflectionTestUtils.getField(client, "currentUpdateInterval"))
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals("update interval", interval, ReflectionTestUtils.getField(client, "currentUpdateInterval"));
+	}
+
+	@Test
+	public void warmUpPrefersFastestMember() throws Exception {
+		final byte[] body = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_get.json").getInputStream());
+		final List<String> requested = Collections.synchronizedList(new ArrayList<String>());
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		client.setLocationUpdaterEnabled(false);
+		client.setWarmUpEnabled(true);
+		client.setRequestFactory(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				if (uri.getPath().equals("/version")) {
+					if (uri.getPort() == 2379) {
+						try {
+							Thread.sleep(50);
+						} catch (InterruptedException e) {
+							throw new IOException("interrupted", e);
+						}
+					}
+					request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+				} else {
+					requested.add(uri.getAuthority());
+					MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+					response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+					request.setResponse(response);
+				}
+				return request;
+			}
+		});
+		client.afterPropertiesSet();
+
+		try {
+			Assert.assertNotNull(client.get("sample"));
+			Assert.assertEquals(Arrays.asList("localhost:2380"), requested);
+		} finally {
+			client.destroy();
+		}
+	}
+
+	@Test
+	public void getCallsInterceptors() throws EtcdException {
+		client.setRetryCount(1);
+		client.setRetryDuration(10000);
+		EtcdBackoffRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+		retryPolicy.setInitialDelay(1);
+		client.setRetryPolicy(retryPolicy);
+
+		final List<String> events = new ArrayList<>();
+		client.setInterceptors(Arrays.<EtcdClientInterceptor> asList(new EtcdClientInterceptor() {
+
+			@Override
+			public void beforeOperation(EtcdInvocation invocation) {
+				invocation.setAttribute("span", "4bf92f3577b34da6");
+				events.add("before " + invocation.getOperation() + " " + invocation.getKey());
+			}
+
+			@Override
+			public void beforeAttempt(EtcdInvocation invocation, int attempt, String member, HttpHeaders headers) {
+				headers.set("X-B3-TraceId", (String) invocation.getAttribute("span"));
+				events.add("before attempt " + attempt + " " + member);
+			}
+
+			@Override
+			public void afterAttempt(EtcdInvocation invocation, int attempt, String member, long latency,
+					Exception error) {
+				events.add("after attempt " + attempt + (error == null ? "" : " failed"));
+			}
+
+			@Override
+			public void afterOperation(EtcdInvocation invocation, int attempts, long latency, Exception error) {
+				events.add("after " + attempts + " attempts" + (error == null ? "" : " failed"));
+			}
+		}));
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.header("X-B3-TraceId", "4bf92f3577b34da6"))
+				.andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						return new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+							@Override
+							public HttpStatus getStatusCode() throws IOException {
+								throw new IOException("connection refused");
+							}
+						};
+					}
+				});
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.header("X-B3-TraceId", "4bf92f3577b34da6"))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource("EtcdClientTest_get.json"),
+						MediaType.APPLICATION_JSON));
+
+		Assert.assertNotNull(client.get("sample"));
+		Assert.assertEquals(Arrays.asList("before get sample", "before attempt 1 localhost:2379",
+				"after attempt 1 failed", "before attempt 2 localhost:2379", "after attempt 2", "after 2 attempts"),
+				events);
+
+		server.verify();
+	}
+
+	@Test
+	public void visitCallsInterceptors() throws EtcdException {
+		final List<String> events = new ArrayList<>();
+		client.setInterceptors(Arrays.<EtcdClientInterceptor> asList(new EtcdClientInterceptor() {
+
+			@Override
+			public void beforeOperation(EtcdInvocation invocation) {
+				events.add("before " + invocation.getOperation() + " " + invocation.getKey());
+			}
+
+			@Override
+			public void beforeAttempt(EtcdInvocation invocation, int attempt, String member, HttpHeaders headers) {
+				headers.set("X-B3-TraceId", "4bf92f3577b34da6");
+			}
+
+			@Override
+			public void afterAttempt(EtcdInvocation invocation, int attempt, String member, long latency,
+					Exception error) {
+			}
+
+			@Override
+			public void afterOperation(EtcdInvocation invocation, int attempts, long latency, Exception error) {
+				events.add("after " + attempts + " attempts" + (error == null ? "" : " failed"));
+			}
+		}));
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?recursive=true"))
+				.andExpect(MockRestRequestMatchers.header("X-B3-TraceId", "4bf92f3577b34da6"))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource("EtcdClientTest_get.json"),
+						MediaType.APPLICATION_JSON));
+
+		Assert.assertEquals(1, client.visit("sample", new EtcdVisitor() {
+
+			@Override
+			public void visit(EtcdNode node) {
+			}
+		}));
+		Assert.assertEquals(Arrays.asList("before visit sample", "after 1 attempts"), events);
+
+		server.verify();
+	}
+
+	@Test
+	public void visitDoesNotCountVisitorTimeAsLatency() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?recursive=true"))
+				.andRespond(MockRestResponseCreators.withSuccess(new ClassPathResource("EtcdClientTest_get.json"),
+						MediaType.APPLICATION_JSON));
+
+		client.visit("sample", new EtcdVisitor() {
+
+			@Override
+			public void visit(EtcdNode node) {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		EtcdRoutingTable routing = (EtcdRoutingTable) ReflectionTestUtils.getField(client, "routing");
+		Assert.assertThat(routing.state(0).getLatency(),
+				Matchers.lessThan((double) TimeUnit.MILLISECONDS.toNanos(100)));
+
+		server.verify();
+	}
+
+	@Test
+	public void getRetriesUpToRetryCount() throws EtcdException {
+		client.setRetryCount(2);
+		client.setRetryDuration(10000);
+		EtcdBackoffRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+		retryPolicy.setInitialDelay(1);
+		client.setRetryPolicy(retryPolicy);
+
+		for (int i = 0; i < 3; i++) {
+			server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+					.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(new ResponseCreator() {
+
+						@Override
+						public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+							return new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+								@Override
+								public HttpStatus getStatusCode() throws IOException {
+									throw new IOException("connection refused");
+								}
+							};
+						}
+					});
+		}
+
+		try {
+			client.get("sample");
+			Assert.fail("request succeeded");
+		} catch (ResourceAccessException e) {
+			Assert.assertEquals("retry budget", 8, client.getRetryBudget().getAvailable(), 0.001);
+		}
+
+		server.verify();
+	}
+
+	@Test
+	public void getAll() throws Exception {
+		EtcdClient client = new EtcdClient(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		// the unordered mock server does not support concurrent requests
+		client.setBatchConcurrency(1);
+		RestTemplate template = new RestTemplate();
+		MockRestServiceServer server = MockRestServiceServer.bindTo(template).ignoreExpectOrder(true).build();
+		ReflectionTestUtils.setField(client, "template", template);
+
+		// the latency based selector would send every read to the first member
+		EtcdRoutingTable routing = (EtcdRoutingTable) ReflectionTestUtils.getField(client, "routing");
+		client.getMemberSelector().success(routing.state(0), TimeUnit.MILLISECONDS.toNanos(1));
+		client.getMemberSelector().success(routing.state(1), TimeUnit.MILLISECONDS.toNanos(50));
+		Assert.assertEquals("preferred member", 0, client.getMemberSelector().select(routing.states(), -1));
+
+		final Set<String> locations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		RequestMatcher location = new RequestMatcher() {
+
+			@Override
+			public void match(ClientHttpRequest request) throws IOException, AssertionError {
+				locations.add(request.getURI().getHost() + ":" + request.getURI().getPort());
+			}
+		};
+
+		server.expect(MockRestRequestMatchers.requestTo(Matchers.endsWith("/v2/keys/a"))).andExpect(location)
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo(Matchers.endsWith("/v2/keys/b"))).andExpect(location)
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo(Matchers.endsWith("/v2/keys/c"))).andExpect(location)
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.NOT_FOUND)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdClientTest_get_error.json")));
+
+		EtcdBatchResponse response = client.getAll(Arrays.asList("a", "b", "c"));
+		Assert.assertEquals("nodes", new HashSet<>(Arrays.asList("a", "b")), response.getNodes().keySet());
+		Assert.assertEquals("errors", Collections.singleton("c"), response.getErrors().keySet());
+		Assert.assertTrue("error", response.getErrors().get("c") instanceof EtcdException);
+		Assert.assertEquals("locations", 2, locations.size());
+
+		server.verify();
+	}
+
+	@Test
+	public void getCoalescesConcurrentReads() throws Exception {
+		final CountDownLatch joined = new CountDownLatch(1);
+		final ResponseCreator get = MockRestResponseCreators
+				.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON);
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						try {
+							joined.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return get.createResponse(request);
+					}
+				});
+
+		FutureTask<EtcdResponse> first = new FutureTask<>(new Callable<EtcdResponse>() {
+
+			@Override
+			public EtcdResponse call() throws Exception {
+				return client.get("sample");
+			}
+		});
+		new Thread(first).start();
+
+		FutureTask<EtcdResponse> second = new FutureTask<>(new Callable<EtcdResponse>() {
+
+			@Override
+			public EtcdResponse call() throws Exception {
+				return client.get("sample");
+			}
+		});
+		new Thread(second).start();
+
+		for (int i = 0; i < 500 && client.getCoalescedReadCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		joined.countDown();
+
+		Assert.assertNotNull("first response", first.get(5, TimeUnit.SECONDS));
+		Assert.assertSame("second response", first.get(), second.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals("coalesced reads", 1, client.getCoalescedReadCount());
+
+		server.verify();
+	}
+
+	@Test
+	public void watch() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=3"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_set.json"), MediaType.APPLICATION_JSON));
+
+		EtcdResponse response = client.watch("sample", 3);
+		Assert.assertNotNull("response", response);
+
+		server.verify();
+	}
+
+	@Test
+	public void watchRecursive() throws EtcdException {
+		server.expect(MockRestRequestMatchers
+				.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=3&recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_set.json"), MediaType.APPLICATION_JSON));
+
+		EtcdResponse response = client.watch("sample", 3, true);
+		Assert.assertNotNull("response", response);
+
+		server.verify();
+	}
 }
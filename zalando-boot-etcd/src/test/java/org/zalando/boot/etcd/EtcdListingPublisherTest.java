@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.RestTemplate;
+
+public class EtcdListingPublisherTest {
+
+	/**
+	 * end of stream marker
+	 */
+	private static final Object COMPLETE = new Object();
+
+	/**
+	 * client
+	 */
+	private EtcdClient client = new EtcdClient("http://localhost:2379");
+
+	/**
+	 * server
+	 */
+	private MockRestServiceServer server;
+
+	/**
+	 * received signals
+	 */
+	private BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+
+	/**
+	 * subscription
+	 */
+	private Subscription subscription;
+
+	@Before
+	public void before() throws Exception {
+		RestTemplate template = new RestTemplate();
+		server = MockRestServiceServer.createServer(template);
+
+		ReflectionTestUtils.setField(client, "template", template);
+	}
+
+	@Test
+	public void publishHonorsDemand() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(
+						new ClassPathResource("EtcdListingPublisherTest_get.json"), MediaType.APPLICATION_JSON));
+
+		new EtcdListingPublisher(client, "config").subscribe(new RecordingSubscriber());
+
+		subscription.request(1);
+		EtcdNode first = (EtcdNode) signals.poll(5, TimeUnit.SECONDS);
+		Assert.assertEquals("first", "/config/a", first.getKey());
+		Assert.assertNull("children", first.getNodes());
+		Assert.assertNull("signal without demand", signals.poll(100, TimeUnit.MILLISECONDS));
+
+		subscription.request(Long.MAX_VALUE);
+		Assert.assertEquals("second", "/config/b/c", ((EtcdNode) signals.poll(5, TimeUnit.SECONDS)).getKey());
+		Assert.assertSame("complete", COMPLETE, signals.poll(5, TimeUnit.SECONDS));
+
+		server.verify();
+	}
+
+	@Test
+	public void publishStopsAfterCancel() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(
+						new ClassPathResource("EtcdListingPublisherTest_get.json"), MediaType.APPLICATION_JSON));
+
+		new EtcdListingPublisher(client, "config").subscribe(new RecordingSubscriber());
+
+		subscription.request(1);
+		Assert.assertEquals("first", "/config/a", ((EtcdNode) signals.poll(5, TimeUnit.SECONDS)).getKey());
+
+		subscription.cancel();
+		subscription.request(1);
+		Assert.assertNull("signal after cancel", signals.poll(100, TimeUnit.MILLISECONDS));
+
+		server.verify();
+	}
+
+	@Test
+	public void publishSignalsError() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.NOT_FOUND)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdClientTest_get_error.json")));
+
+		new EtcdListingPublisher(client, "config").subscribe(new RecordingSubscriber());
+
+		subscription.request(1);
+		Assert.assertTrue("error", signals.poll(5, TimeUnit.SECONDS) instanceof EtcdException);
+
+		server.verify();
+	}
+
+	@Test
+	public void publishSignalsZeroDemand() throws Exception {
+		new EtcdListingPublisher(client, "config").subscribe(new RecordingSubscriber());
+
+		subscription.request(0);
+		Assert.assertTrue("error", signals.poll(5, TimeUnit.SECONDS) instanceof IllegalArgumentException);
+
+		server.verify();
+	}
+
+	/**
+	 * Subscriber recording all signals.
+	 */
+	private class RecordingSubscriber implements Subscriber<EtcdNode> {
+
+		@Override
+		public void onSubscribe(Subscription s) {
+			subscription = s;
+		}
+
+		@Override
+		public void onNext(EtcdNode node) {
+			signals.add(node);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			signals.add(t);
+		}
+
+		@Override
+		public void onComplete() {
+			signals.add(COMPLETE);
+		}
+	}
+}
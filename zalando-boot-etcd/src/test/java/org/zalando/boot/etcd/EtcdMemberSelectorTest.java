@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EtcdMemberSelectorTest {
+
+	@Test
+	public void roundRobin() {
+		EtcdRoundRobinMemberSelector selector = new EtcdRoundRobinMemberSelector();
+		EtcdMemberState[] members = EtcdMemberState.create(3);
+
+		Assert.assertEquals(0, selector.select(members, -1));
+		Assert.assertEquals(1, selector.select(members, -1));
+		Assert.assertEquals(2, selector.select(members, -1));
+		Assert.assertEquals(0, selector.select(members, -1));
+
+		selector.failure(members[1]);
+		Set<Integer> selected = new HashSet<>();
+		for (int i = 0; i < 6; i++) {
+			selected.add(selector.select(members, -1));
+		}
+		Assert.assertEquals("healthy members", new HashSet<>(Arrays.asList(0, 2)), selected);
+	}
+
+	@Test
+	public void ewma() {
+		EtcdEwmaMemberSelector selector = new EtcdEwmaMemberSelector();
+		EtcdMemberState[] members = EtcdMemberState.create(3);
+
+		selector.success(members[0], 3000000);
+		selector.success(members[1], 1000000);
+		Assert.assertEquals("unmeasured member", 2, selector.select(members, -1));
+
+		selector.success(members[2], 2000000);
+		Assert.assertEquals("fastest member", 1, selector.select(members, -1));
+
+		selector.failure(members[1]);
+		Assert.assertEquals("fastest healthy member", 2, selector.select(members, -1));
+
+		selector.success(members[2], 10000000);
+		Assert.assertEquals("moving average", 0, selector.select(members, -1));
+	}
+
+	@Test
+	public void ewmaWithoutHealthyMember() {
+		EtcdEwmaMemberSelector selector = new EtcdEwmaMemberSelector();
+		EtcdMemberState[] members = EtcdMemberState.create(2);
+
+		selector.failure(members[1]);
+		selector.failure(members[0]);
+		Assert.assertEquals("least recently failed member", 1, selector.select(members, -1));
+
+		selector.setFailureTimeout(0);
+		selector.success(members[1], 2000000);
+		selector.success(members[0], 1000000);
+		Assert.assertEquals(0, selector.select(members, -1));
+	}
+
+	@Test
+	public void powerOfTwoChoices() {
+		EtcdPowerOfTwoChoicesMemberSelector selector = new EtcdPowerOfTwoChoicesMemberSelector();
+		EtcdMemberState[] members = EtcdMemberState.create(3);
+
+		selector.success(members[0], 1000000);
+		selector.success(members[1], 2000000);
+		selector.success(members[2], 3000000);
+
+		Set<Integer> selected = new HashSet<>();
+		for (int i = 0; i < 100; i++) {
+			selected.add(selector.select(members, -1));
+		}
+		Assert.assertTrue("fastest member", selected.contains(0));
+		Assert.assertTrue("second fastest member", selected.contains(1));
+		Assert.assertFalse("slowest member", selected.contains(2));
+
+		selector.failure(members[0]);
+		selector.failure(members[1]);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals("healthy member", 2, selector.select(members, -1));
+		}
+	}
+
+	@Test
+	public void circuitBreaker() {
+		EtcdEwmaMemberSelector selector = new EtcdEwmaMemberSelector();
+		selector.setFailureThreshold(2);
+		EtcdMemberState[] members = EtcdMemberState.create(2);
+		selector.success(members[0], 1000000);
+		selector.success(members[1], 2000000);
+
+		selector.failure(members[0]);
+		Assert.assertEquals("single failure", AbstractEtcdMemberSelector.State.CLOSED, AbstractEtcdMemberSelector.getState(members[0]));
+		Assert.assertEquals(0, selector.select(members, -1));
+
+		selector.setFailureTimeout(0);
+		selector.failure(members[0]);
+		Assert.assertEquals("consecutive failures", AbstractEtcdMemberSelector.State.OPEN, AbstractEtcdMemberSelector.getState(members[0]));
+		Assert.assertEquals("probe", 0, selector.select(members, -1));
+		Assert.assertEquals("probing", AbstractEtcdMemberSelector.State.HALF_OPEN, AbstractEtcdMemberSelector.getState(members[0]));
+
+		selector.failure(members[0]);
+		Assert.assertEquals("failed probe", AbstractEtcdMemberSelector.State.OPEN, AbstractEtcdMemberSelector.getState(members[0]));
+
+		Assert.assertEquals("probe", 0, selector.select(members, -1));
+		selector.success(members[0], 1000000);
+		Assert.assertEquals("successful probe", AbstractEtcdMemberSelector.State.CLOSED, AbstractEtcdMemberSelector.getState(members[0]));
+	}
+
+	@Test
+	public void circuitBreakerWithSlowCalls() {
+		EtcdEwmaMemberSelector selector = new EtcdEwmaMemberSelector();
+		selector.setSlowCallThreshold(2);
+		selector.setSlowCallDuration(10);
+		EtcdMemberState[] members = EtcdMemberState.create(2);
+
+		selector.success(members[0], 20000000);
+		selector.success(members[0], 1000000);
+		selector.success(members[0], 20000000);
+		Assert.assertEquals("single slow call", AbstractEtcdMemberSelector.State.CLOSED, AbstractEtcdMemberSelector.getState(members[0]));
+
+		selector.success(members[0], 20000000);
+		Assert.assertEquals("consecutive slow calls", AbstractEtcdMemberSelector.State.OPEN, AbstractEtcdMemberSelector.getState(members[0]));
+		Assert.assertEquals("ejected", 1, selector.select(members, -1));
+	}
+
+	@Test
+	public void selectExcludingMember() {
+		EtcdEwmaMemberSelector selector = new EtcdEwmaMemberSelector();
+		EtcdMemberState[] members = EtcdMemberState.create(3);
+		selector.success(members[0], 1000000);
+		selector.success(members[1], 2000000);
+		selector.success(members[2], 3000000);
+
+		Assert.assertEquals("fastest other member", 1, selector.select(members, 0));
+
+		selector.failure(members[1]);
+		selector.failure(members[2]);
+		Assert.assertEquals("no other healthy member", -1, selector.select(members, 0));
+		Assert.assertEquals("without exclusion", 0, selector.select(members, -1));
+	}
+}
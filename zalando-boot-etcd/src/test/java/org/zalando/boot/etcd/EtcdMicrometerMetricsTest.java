@@ -0,0 +1,191 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.RestTemplate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class EtcdMicrometerMetricsTest {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	private final EtcdClient client = new EtcdClient(
+			new String[] { "http://localhost:2379", "http://localhost:2380" });
+
+	private MockRestServiceServer server;
+
+	@Before
+	public void before() {
+		EtcdBackoffRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+		retryPolicy.setInitialDelay(1);
+		client.setRetryPolicy(retryPolicy);
+		client.setRetryCount(1);
+		client.setRetryDuration(1000);
+		client.setMemberSelector(new EtcdRoundRobinMemberSelector());
+		client.setMetrics(new EtcdMicrometerMetrics(registry));
+
+		RestTemplate template = new RestTemplate();
+		server = MockRestServiceServer.createServer(template);
+		ReflectionTestUtils.setField(client, "template", template);
+	}
+
+	@Test
+	public void operations() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.NOT_FOUND)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdClientTest_get_error.json")));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.PUT)).andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						return new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+
+							@Override
+							public HttpStatus getStatusCode() throws IOException {
+								throw new IOException("connection refused");
+							}
+						};
+					}
+				});
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2380/v2/keys/sample"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.PUT)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_set.json"), MediaType.APPLICATION_JSON));
+
+		client.get("sample");
+		try {
+			client.get("sample");
+			Assert.fail("missing error");
+		} catch (EtcdException e) {
+			Assert.assertEquals(101, e.getError().getErrorCode());
+		}
+		client.put("sample", "value");
+
+		server.verify();
+
+		Assert.assertEquals(1, timer("etcd.client.operations", "operation", "get", "outcome", "SUCCESS").count());
+		Assert.assertEquals(1, timer("etcd.client.operations", "operation", "get", "outcome", "HTTP_ERROR").count());
+		Assert.assertEquals(1, timer("etcd.client.operations", "operation", "put", "outcome", "SUCCESS").count());
+		Assert.assertEquals(1, timer("etcd.client.requests", "operation", "get", "member", "localhost:2380", "outcome",
+				"HTTP_ERROR", "error", "101").count());
+		Assert.assertEquals(1, timer("etcd.client.requests", "operation", "put", "member", "localhost:2379", "outcome",
+				"IO_ERROR", "error", "0").count());
+		Assert.assertEquals(1, registry.find("etcd.client.retries").tags("operation", "put").counter().count(), 0);
+		Assert.assertEquals(1, registry.find("etcd.client.failovers").tags("operation", "put").counter().count(), 0);
+	}
+
+	@Test
+	public void visitAndGetAll() throws EtcdException {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(
+						new ClassPathResource("EtcdListingPublisherTest_get.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo(Matchers.endsWith("/v2/keys/sample")))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+
+		client.visit("config", new EtcdVisitor() {
+
+			@Override
+			public void visit(EtcdNode node) {
+			}
+		});
+		client.getAll(Collections.singletonList("sample"));
+
+		server.verify();
+
+		Assert.assertEquals(1, timer("etcd.client.operations", "operation", "visit", "outcome", "SUCCESS").count());
+		Assert.assertEquals(1, timer("etcd.client.operations", "operation", "get", "outcome", "SUCCESS").count());
+	}
+
+	@Test
+	public void members() {
+		Assert.assertEquals(2, registry.find("etcd.client.members").gauge().value(), 0);
+
+		client.setLocations(new String[] { "http://localhost:2379" });
+		Assert.assertEquals(1, registry.find("etcd.client.members").gauge().value(), 0);
+		Assert.assertEquals(1, registry.find("etcd.client.membership.changes").counter().count(), 0);
+	}
+
+	@Test
+	public void membersDropsMetersOfDepartedMembers() {
+		EtcdMicrometerMetrics metrics = new EtcdMicrometerMetrics(registry);
+		metrics.members(new String[] { "http://localhost:2379", "http://localhost:2380" });
+		metrics.request("get", "localhost:2379", EtcdClientMetrics.Outcome.SUCCESS, 0, 1000);
+		metrics.request("get", "localhost:2380", EtcdClientMetrics.Outcome.HTTP_ERROR, 100, 1000);
+
+		metrics.members(new String[] { "http://localhost:2379" });
+
+		Map<?, ?> operations = (Map<?, ?>) ReflectionTestUtils.getField(metrics, "operations");
+		Map<?, ?> members = (Map<?, ?>) ReflectionTestUtils.getField(operations.get("get"), "members");
+		Assert.assertEquals(Collections.singleton("localhost:2379"), members.keySet());
+	}
+
+	@Test
+	public void requestsWithErrorCodes() {
+		EtcdMicrometerMetrics metrics = new EtcdMicrometerMetrics(registry);
+		metrics.request("get", "localhost:2379", EtcdClientMetrics.Outcome.HTTP_ERROR, 100, 1000);
+		metrics.request("get", "localhost:2379", EtcdClientMetrics.Outcome.HTTP_ERROR, 100, 1000);
+		metrics.request("get", "localhost:2379", EtcdClientMetrics.Outcome.HTTP_ERROR, 500, 1000);
+		metrics.request("get", "localhost:2379", EtcdClientMetrics.Outcome.HTTP_ERROR, 1234, 1000);
+
+		Assert.assertEquals(2, timer("etcd.client.requests", "member", "localhost:2379", "error", "100").count());
+		Assert.assertEquals(1, timer("etcd.client.requests", "member", "localhost:2379", "error", "500").count());
+		Assert.assertEquals(1, timer("etcd.client.requests", "member", "localhost:2379", "error", "1234").count());
+	}
+
+	private Timer timer(String name, String... tags) {
+		Timer timer = registry.find(name).tags(tags).timer();
+		Assert.assertNotNull(name, timer);
+		return timer;
+	}
+}
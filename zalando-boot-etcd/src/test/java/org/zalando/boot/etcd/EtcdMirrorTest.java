@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.RestTemplate;
+
+public class EtcdMirrorTest {
+
+	/**
+	 * client
+	 */
+	private EtcdClient client = new EtcdClient("http://localhost:2379");
+
+	/**
+	 * mirror
+	 */
+	private EtcdMirror mirror = new EtcdMirror(client, "config");
+
+	/**
+	 * server
+	 */
+	private MockRestServiceServer server;
+
+	/**
+	 * latch blocking the last watch request
+	 */
+	private CountDownLatch latch = new CountDownLatch(1);
+
+	@Before
+	public void before() throws Exception {
+		RestTemplate template = new RestTemplate();
+		server = MockRestServiceServer.createServer(template);
+
+		ReflectionTestUtils.setField(client, "template", template);
+		ReflectionTestUtils.setField(client, "watchTemplate", template);
+	}
+
+	@After
+	public void after() {
+		mirror.destroy();
+		latch.countDown();
+	}
+
+	@Test
+	public void mirrorAppliesChanges() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdMirrorTest_get.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers
+				.requestTo("http://localhost:2379/v2/keys/config?wait=true&waitIndex=6&recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdMirrorTest_set.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers
+				.requestTo("http://localhost:2379/v2/keys/config?wait=true&waitIndex=7&recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(
+						new ClassPathResource("EtcdMirrorTest_delete.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers
+				.requestTo("http://localhost:2379/v2/keys/config?wait=true&waitIndex=8&recursive=true"))
+				.andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						try {
+							latch.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return MockRestResponseCreators.withNoContent().createResponse(request);
+					}
+				});
+
+		mirror.afterPropertiesSet();
+
+		for (int i = 0; i < 100 && mirror.getIndex() < 7; i++) {
+			Thread.sleep(50);
+		}
+
+		Assert.assertEquals("index", 7, mirror.getIndex());
+		Assert.assertEquals("value", "a2", mirror.getValue("config/a"));
+		Assert.assertNull("deleted directory", mirror.get("config/b"));
+		Assert.assertNull("deleted child", mirror.get("config/b/c"));
+		Assert.assertEquals("scan", 1, mirror.scan("/config/").size());
+	}
+
+	@Test
+	public void mirrorWatchesFromEtcdIndex() throws Exception {
+		// changes outside of the prefix advanced the etcd index after the last change of the prefix
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-Etcd-Index", "20");
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdMirrorTest_get.json"), MediaType.APPLICATION_JSON)
+						.headers(headers));
+		final CountDownLatch watching = new CountDownLatch(1);
+		server.expect(MockRestRequestMatchers
+				.requestTo("http://localhost:2379/v2/keys/config?wait=true&waitIndex=21&recursive=true"))
+				.andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						watching.countDown();
+						try {
+							latch.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return MockRestResponseCreators.withNoContent().createResponse(request);
+					}
+				});
+
+		mirror.afterPropertiesSet();
+
+		Assert.assertTrue("watching", watching.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("index", 20, mirror.getIndex());
+	}
+
+	@Test
+	public void applySnapshot() throws Exception {
+		EtcdNode node = new EtcdNode();
+		node.setKey("/config/x");
+		node.setValue("x");
+		node.setModifiedIndex(10);
+		mirror.apply(new EtcdResponse("set", node, null));
+
+		EtcdNode snapshot = new EtcdNode();
+		snapshot.setKey("/config");
+		snapshot.setDir(true);
+		snapshot.setModifiedIndex(2);
+		mirror.apply(new EtcdResponse("get", snapshot, null));
+
+		Assert.assertNotNull("root", mirror.get("/config"));
+		Assert.assertNull("removed node", mirror.get("/config/x"));
+		Assert.assertEquals("index", 10, mirror.getIndex());
+	}
+
+	@Test
+	public void scanReturnsSnapshot() throws Exception {
+		EtcdNode a = new EtcdNode();
+		a.setKey("/config/a");
+		a.setValue("a");
+		a.setModifiedIndex(3);
+		mirror.apply(new EtcdResponse("set", a, null));
+
+		SortedMap<String, EtcdNode> scan = mirror.scan("/config/");
+		Assert.assertSame("snapshot per index", mirror.getNodes(), mirror.getNodes());
+
+		EtcdNode b = new EtcdNode();
+		b.setKey("/config/b");
+		b.setValue("b");
+		b.setModifiedIndex(4);
+		mirror.apply(new EtcdResponse("set", b, null));
+
+		Assert.assertEquals("previous scan", 1, scan.size());
+		Assert.assertEquals("current scan", 2, mirror.scan("/config/").size());
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class EtcdPoolingRequestFactoryTest {
+
+	/**
+	 * response body of the local server
+	 */
+	private static final byte[] BODY = ("{\"action\":\"get\",\"node\":{\"key\":\"/sample\",\"value\":\"Hello world\","
+			+ "\"modifiedIndex\":2,\"createdIndex\":2}}").getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * local server
+	 */
+	private HttpServer server;
+
+	/**
+	 * location of the local server
+	 */
+	private String location;
+
+	/**
+	 * request factory
+	 */
+	private EtcdPoolingRequestFactory requestFactory = new EtcdPoolingRequestFactory();
+
+	@Before
+	public void before() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, BODY.length);
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(BODY);
+				}
+			}
+		});
+		server.start();
+		location = "http://127.0.0.1:" + server.getAddress().getPort();
+
+		requestFactory.setMaxConnectionsPerLocation(4);
+		requestFactory.afterPropertiesSet();
+	}
+
+	@After
+	public void after() throws Exception {
+		requestFactory.destroy();
+		server.stop(0);
+	}
+
+	@Test
+	public void warmUp() throws Exception {
+		int opened = requestFactory.warmUp(new String[] { location, "http://127.0.0.1:1" }, 3);
+		Assert.assertEquals("opened connections", 3, opened);
+		Assert.assertEquals("available connections", 3, requestFactory.getAvailableConnections());
+	}
+
+	@Test
+	public void getReusesConnection() throws Exception {
+		requestFactory.warmUp(new String[] { location }, 1);
+
+		EtcdClient client = new EtcdClient(location);
+		client.setLocationUpdaterEnabled(false);
+		client.setRequestFactory(requestFactory);
+		client.afterPropertiesSet();
+
+		for (int i = 0; i < 3; i++) {
+			EtcdResponse response = client.get("sample");
+			Assert.assertEquals("value", "Hello world", response.getNode().getValue());
+		}
+		Assert.assertEquals("available connections", 1, requestFactory.getAvailableConnections());
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.RestTemplate;
+
+public class EtcdPrefixWatcherTest {
+
+	/**
+	 * client
+	 */
+	private EtcdClient client = new EtcdClient("http://localhost:2379");
+
+	/**
+	 * watcher
+	 */
+	private EtcdPrefixWatcher watcher = new EtcdPrefixWatcher(client);
+
+	/**
+	 * server
+	 */
+	private MockRestServiceServer server;
+
+	@Before
+	public void before() throws Exception {
+		RestTemplate template = new RestTemplate();
+		server = MockRestServiceServer.createServer(template);
+
+		ReflectionTestUtils.setField(client, "template", template);
+		ReflectionTestUtils.setField(client, "watchTemplate", template);
+	}
+
+	@Test
+	public void dispatchesChangesOfSharedRoot() throws Exception {
+		// hold back the changes until both listeners are registered
+		final CountDownLatch registered = new CountDownLatch(1);
+		final ResponseCreator get = MockRestResponseCreators
+				.withSuccess(new ClassPathResource("EtcdPrefixWatcherTest_get.json"), MediaType.APPLICATION_JSON);
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/config?recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(new ResponseCreator() {
+
+					@Override
+					public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+						try {
+							registered.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return get.createResponse(request);
+					}
+				});
+		server.expect(MockRestRequestMatchers
+				.requestTo("http://localhost:2379/v2/keys/config?wait=true&waitIndex=6&recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(
+						new ClassPathResource("EtcdPrefixWatcherTest_set_a.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers
+				.requestTo("http://localhost:2379/v2/keys/config?wait=true&waitIndex=7&recursive=true"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withSuccess(
+						new ClassPathResource("EtcdPrefixWatcherTest_set_b.json"), MediaType.APPLICATION_JSON));
+
+		final BlockingQueue<EtcdResponse> keyChanges = new LinkedBlockingQueue<>();
+		final BlockingQueue<EtcdResponse> prefixChanges = new LinkedBlockingQueue<>();
+
+		final EtcdPrefixWatcher.Registration key = watcher.watchKey("config", "config/a", new EtcdListener() {
+
+			@Override
+			public void onChange(EtcdResponse response) {
+				keyChanges.add(response);
+			}
+		});
+		watcher.watchPrefix("config", "config/b", new EtcdListener() {
+
+			@Override
+			public void onChange(EtcdResponse response) {
+				watcher.destroy();
+				prefixChanges.add(response);
+			}
+		});
+
+		Assert.assertEquals("roots", 1, watcher.getRoots().size());
+		registered.countDown();
+
+		EtcdResponse keyChange = keyChanges.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull("key change", keyChange);
+		Assert.assertEquals("key", "/config/a", keyChange.getNode().getKey());
+
+		EtcdResponse prefixChange = prefixChanges.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull("prefix change", prefixChange);
+		Assert.assertEquals("key", "/config/b/c", prefixChange.getNode().getKey());
+
+		Assert.assertTrue("no further key changes", keyChanges.isEmpty());
+		Assert.assertTrue("no further roots", watcher.getRoots().isEmpty());
+		key.cancel();
+
+		server.verify();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsKeyOutsideOfRoot() {
+		watcher.watchKey("config", "other/a", new EtcdListener() {
+
+			@Override
+			public void onChange(EtcdResponse response) {
+			}
+		});
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Compares building the URI and form body of a put request with
+ * {@link UriComponentsBuilder} and {@link FormHttpMessageConverter} against
+ * {@link EtcdUris}, and measures the whole request path of
+ * {@link EtcdClient#put(String, String, int)} against a request factory that
+ * answers from memory, so only the client's own work is measured. Run
+ * {@link #main(String[])} from the test class path, the GC profiler reports
+ * the allocations per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EtcdRequestPathBenchmark {
+
+	/**
+	 * location of the member
+	 */
+	private String location = "http://localhost:2379";
+
+	/**
+	 * base URI of the member
+	 */
+	private String base = EtcdUris.base(location);
+
+	/**
+	 * key of the node
+	 */
+	private String key = "config/service/feature flag";
+
+	/**
+	 * value of the node
+	 */
+	private String value = "Hello world";
+
+	/**
+	 * form converter of the builder path
+	 */
+	private FormHttpMessageConverter converter = new FormHttpMessageConverter();
+
+	/**
+	 * client answered by the stub request factory
+	 */
+	private EtcdClient client;
+
+	@Setup
+	public void setUp() throws Exception {
+		final byte[] response = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_set.json").getInputStream());
+
+		client = new EtcdClient(location);
+		client.setLocationUpdaterEnabled(false);
+		client.setRequestFactory(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+				MockClientHttpResponse clientResponse = new MockClientHttpResponse(response, HttpStatus.OK);
+				clientResponse.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				clientResponse.getHeaders().setContentLength(response.length);
+
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				request.setResponse(clientResponse);
+				return request;
+			}
+		});
+		client.afterPropertiesSet();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		client.destroy();
+	}
+
+	@Benchmark
+	public void builder(Blackhole blackhole) throws IOException {
+		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString("{location}/v2/keys");
+		builder.pathSegment(key);
+		builder.queryParam("ttl", 60);
+
+		MultiValueMap<String, String> payload = new LinkedMultiValueMap<>(1);
+		payload.set("value", value);
+
+		URI uri = builder.buildAndExpand(location).toUri();
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		converter.write(payload, MediaType.APPLICATION_FORM_URLENCODED, message);
+
+		blackhole.consume(uri);
+		blackhole.consume(message.getBodyAsBytes());
+	}
+
+	@Benchmark
+	public void uris(Blackhole blackhole) {
+		StringBuilder target = EtcdUris.keys(key);
+		EtcdUris.ttl(target, 60);
+		byte[] body = EtcdUris.form("value", value);
+
+		blackhole.consume(EtcdUris.uri(base, target.toString()));
+		blackhole.consume(body);
+	}
+
+	@Benchmark
+	public EtcdResponse put() throws EtcdException {
+		return client.put(key, value, 60);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EtcdRequestPathBenchmark.class.getSimpleName()).addProfiler("gc")
+				.build()).run();
+	}
+}
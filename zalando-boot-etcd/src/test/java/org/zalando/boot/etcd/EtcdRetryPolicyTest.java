@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EtcdRetryPolicyTest {
+
+	@Test
+	public void backoff() {
+		EtcdBackoffRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+		retryPolicy.setJitter(false);
+
+		Assert.assertEquals(50, retryPolicy.getDelay(1));
+		Assert.assertEquals(100, retryPolicy.getDelay(2));
+		Assert.assertEquals(800, retryPolicy.getDelay(5));
+		Assert.assertEquals("max delay", 2000, retryPolicy.getDelay(10));
+	}
+
+	@Test
+	public void backoffWithJitter() {
+		EtcdBackoffRetryPolicy retryPolicy = new EtcdBackoffRetryPolicy();
+
+		for (int i = 0; i < 100; i++) {
+			long delay = retryPolicy.getDelay(3);
+			Assert.assertTrue("delay " + delay, delay >= 0 && delay <= 200);
+		}
+	}
+
+	@Test
+	public void budget() {
+		EtcdRetryBudget budget = new EtcdRetryBudget(0.5, 2);
+
+		Assert.assertTrue(budget.tryWithdraw());
+		Assert.assertTrue(budget.tryWithdraw());
+		Assert.assertFalse("exhausted", budget.tryWithdraw());
+
+		budget.deposit();
+		Assert.assertFalse("half a retry", budget.tryWithdraw());
+		budget.deposit();
+		Assert.assertTrue(budget.tryWithdraw());
+
+		for (int i = 0; i < 10; i++) {
+			budget.deposit();
+		}
+		Assert.assertEquals("capped", 2, budget.getAvailable(), 0.001);
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+public class EtcdRoutingTableTest {
+
+	@Test
+	public void routesByIndex() {
+		EtcdRoutingTable routing = new EtcdRoutingTable(
+				new String[] { "http://localhost:2379/", "http://localhost:2380" });
+
+		Assert.assertEquals(2, routing.size());
+		Assert.assertEquals("http://localhost:2380", routing.location(1));
+		Assert.assertEquals(URI.create("http://localhost:2379/v2/keys/sample"), routing.uri(0, "/keys/sample"));
+		Assert.assertEquals(URI.create("http://localhost:2379/v2/keys/sample"), routing.uri(2, "/keys/sample"));
+		Assert.assertTrue(routing.hasLocations(new String[] { "http://localhost:2379/", "http://localhost:2380" }));
+		Assert.assertTrue(routing.hasLocations(new String[] { "http://localhost:2380", "http://localhost:2379/" }));
+		Assert.assertFalse(routing.hasLocations(new String[] { "http://localhost:2379/" }));
+		Assert.assertFalse(routing.hasLocations(new String[] { "http://localhost:2379/", "http://localhost:2381" }));
+	}
+
+	@Test
+	public void ownsMemberState() {
+		EtcdRoutingTable previous = new EtcdRoutingTable(
+				new String[] { "http://localhost:2379", "http://localhost:2380", "http://localhost:2381" });
+		EtcdRoutingTable current = new EtcdRoutingTable(
+				new String[] { "http://localhost:2379", "http://localhost:2380" });
+		EtcdEwmaMemberSelector selector = new EtcdEwmaMemberSelector();
+		selector.success(current.state(0), 1000000);
+		selector.success(current.state(1), 2000000);
+
+		// a request routed with the previous table reports its outcome late
+		selector.failure(previous.state(0));
+
+		Assert.assertEquals(AbstractEtcdMemberSelector.State.CLOSED,
+				AbstractEtcdMemberSelector.getState(current.state(0)));
+		Assert.assertEquals(0, selector.select(current.states(), -1));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void emptyTable() {
+		EtcdRoutingTable.EMPTY.uri(0, "/keys/sample");
+	}
+
+	@Test(expected = EtcdException.class)
+	public void getWithoutMembers() throws EtcdException {
+		new EtcdClient().get("sample");
+	}
+
+	@Test
+	public void getAllWithoutMembers() {
+		EtcdBatchResponse response = new EtcdClient().getAll(Arrays.asList("a", "b"));
+		Assert.assertTrue("nodes", response.getNodes().isEmpty());
+		Assert.assertTrue("error", response.getErrors().get("a") instanceof EtcdException);
+		Assert.assertTrue("error", response.getErrors().get("b") instanceof EtcdException);
+	}
+
+	@Test
+	public void concurrentMembershipUpdates() throws Exception {
+		final List<String[]> memberships = Arrays.asList(new String[] { "http://localhost:2379" },
+				new String[] { "http://localhost:2379", "http://localhost:2380", "http://localhost:2381" },
+				new String[] { "http://localhost:2382", "http://localhost:2383" },
+				new String[] { "http://localhost:2379", "http://localhost:2380", "http://localhost:2381",
+						"http://localhost:2382", "http://localhost:2383" });
+		Set<String> authorities = new HashSet<>();
+		for (String[] locations : memberships) {
+			for (String location : locations) {
+				authorities.add(URI.create(location).getAuthority());
+			}
+		}
+
+		final byte[] body = StreamUtils
+				.copyToByteArray(new ClassPathResource("EtcdClientTest_get.json").getInputStream());
+		final Queue<String> requested = new ConcurrentLinkedQueue<>();
+		final EtcdClient client = new EtcdClient(memberships.get(0));
+		client.setMemberSelector(new EtcdRoundRobinMemberSelector());
+		ReflectionTestUtils.setField(client, "template", new RestTemplate(new ClientHttpRequestFactory() {
+
+			@Override
+			public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+				requested.add(uri.getAuthority());
+				MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+				MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+				response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+				request.setResponse(response);
+				return request;
+			}
+		}));
+
+		final int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+		final CountDownLatch done = new CountDownLatch(threads + 1);
+
+		for (int i = 0; i < threads; i++) {
+			new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						while (running.get()) {
+							Assert.assertNotNull(client.get("sample"));
+							Assert.assertNotNull(client.getCurrentLocation());
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 20000; i++) {
+						client.setLocations(memberships.get(i % memberships.size()));
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				} finally {
+					running.set(false);
+					done.countDown();
+				}
+			}
+		}).start();
+
+		Assert.assertTrue("stress test finished", done.await(60, TimeUnit.SECONDS));
+		Assert.assertTrue("errors " + errors, errors.isEmpty());
+		Assert.assertFalse("requests sent", requested.isEmpty());
+		Assert.assertTrue("known members", authorities.containsAll(requested));
+	}
+}
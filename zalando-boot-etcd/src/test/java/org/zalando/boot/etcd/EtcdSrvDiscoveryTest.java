@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EtcdSrvDiscoveryTest {
+
+	private final Map<String, List<String>> records = new HashMap<>();
+
+	private final EtcdSrvDiscovery discovery = new EtcdSrvDiscovery("example.org") {
+
+		@Override
+		protected List<String> lookup(String name) throws NamingException {
+			List<String> values = records.get(name);
+			return values == null ? Collections.<String> emptyList() : new ArrayList<>(values);
+		}
+	};
+
+	@Test
+	public void clientRecords() throws NamingException {
+		records.put("_etcd-client._tcp.example.org", Arrays.asList("10 50 4001 etcd2.example.org.",
+				"0 10 2379 etcd0.example.org.", "0 90 2479 etcd1.example.org.", "20 0 2379 etcd3.example.org."));
+
+		String[] locations = discovery.getLocations();
+		Assert.assertEquals(4, locations.length);
+		Assert.assertEquals("same priority first",
+				new HashSet<>(Arrays.asList("http://etcd0.example.org:2379", "http://etcd1.example.org:2479")),
+				new HashSet<>(Arrays.asList(locations[0], locations[1])));
+		Assert.assertEquals("http://etcd2.example.org:4001", locations[2]);
+		Assert.assertEquals("http://etcd3.example.org:2379", locations[3]);
+	}
+
+	@Test
+	public void serverRecords() throws NamingException {
+		records.put("_etcd-server._tcp.example.org", Arrays.asList("0 0 2380 etcd0.example.org."));
+
+		Assert.assertArrayEquals("client port", new String[] { "http://etcd0.example.org:2379" },
+				discovery.getLocations());
+	}
+
+	@Test
+	public void malformedRecords() throws NamingException {
+		records.put("_etcd-client._tcp.example.org", Arrays.asList("x 10 2379 etcd0.example.org.",
+				"0 -1 2379 etcd1.example.org.", "0 10 99999 etcd2.example.org.", "0 10 etcd3.example.org.",
+				"0 10 2379 etcd4.example.org."));
+
+		Assert.assertArrayEquals("valid records", new String[] { "http://etcd4.example.org:2379" },
+				discovery.getLocations());
+	}
+
+	@Test(expected = NameNotFoundException.class)
+	public void noRecords() throws NamingException {
+		discovery.getLocations();
+	}
+
+	@Test
+	public void refreshUpdatesClient() throws NamingException {
+		records.put("_etcd-client._tcp.example.org", Arrays.asList("0 0 2379 etcd0.example.org."));
+		EtcdClient client = new EtcdClient(discovery.getLocations());
+		discovery.setClient(client);
+
+		records.put("_etcd-client._tcp.example.org",
+				Arrays.asList("0 0 2379 etcd0.example.org.", "0 0 2379 etcd1.example.org."));
+		discovery.refresh();
+
+		Assert.assertEquals(
+				new HashSet<>(Arrays.asList("http://etcd0.example.org:2379", "http://etcd1.example.org:2379")),
+				new HashSet<>(Arrays.asList(client.getLocations())));
+	}
+}
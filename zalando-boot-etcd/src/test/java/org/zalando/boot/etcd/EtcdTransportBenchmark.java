@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compares the throughput of {@link EtcdClient#get(String)} using the simple
+ * request factory with the pooling request factory against a local HTTP
+ * server answering like etcd. Run {@link #main(String[])} from the test class
+ * path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class EtcdTransportBenchmark {
+
+	/**
+	 * response body of the local server
+	 */
+	private static final byte[] BODY = ("{\"action\":\"get\",\"node\":{\"key\":\"/sample\",\"value\":\"Hello world\","
+			+ "\"modifiedIndex\":2,\"createdIndex\":2}}").getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * transport to benchmark
+	 */
+	@Param({ "simple", "pooled" })
+	private String transport;
+
+	/**
+	 * local server
+	 */
+	private HttpServer server;
+
+	/**
+	 * executor of the local server
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * client
+	 */
+	private EtcdClient client;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		// avoid delayed ACKs dominating the latency of the local server
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		executor = Executors.newFixedThreadPool(16);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		server.setExecutor(executor);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, BODY.length);
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(BODY);
+				}
+			}
+		});
+		server.start();
+
+		String location = "http://127.0.0.1:" + server.getAddress().getPort();
+		client = new EtcdClient(location);
+		client.setLocationUpdaterEnabled(false);
+		// concurrent reads of the same key would share a request and hide the transport
+		client.setReadCoalescingEnabled(false);
+
+		if ("pooled".equals(transport)) {
+			EtcdPoolingRequestFactory requestFactory = new EtcdPoolingRequestFactory();
+			requestFactory.setReadTimeout(3000);
+			requestFactory.afterPropertiesSet();
+			requestFactory.warmUp(new String[] { location }, 8);
+			client.setRequestFactory(requestFactory);
+		} else {
+			SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+			requestFactory.setConnectTimeout(1000);
+			requestFactory.setReadTimeout(3000);
+			client.setRequestFactory(requestFactory);
+		}
+		client.afterPropertiesSet();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		client.destroy();
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public EtcdResponse get() throws EtcdException {
+		return client.get("sample");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EtcdTransportBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EtcdUrisTest {
+
+	@Test
+	public void keys() {
+		Assert.assertEquals("/keys/sample", EtcdUris.keys("sample").toString());
+		Assert.assertEquals("/keys/dir/sample", EtcdUris.keys("/dir/sample").toString());
+		Assert.assertEquals("/keys/a%20b%3Fc%23d%25e+f", EtcdUris.keys("a b?c#d%e+f").toString());
+		Assert.assertEquals("/keys/%C3%A4%E2%82%AC%F0%9F%98%80", EtcdUris.keys("ä€😀").toString());
+	}
+
+	@Test
+	public void params() {
+		StringBuilder target = EtcdUris.keys("sample");
+		EtcdUris.ttl(target, -1);
+		EtcdUris.param(target, "prevExist", false);
+		EtcdUris.param(target, "prevIndex", 2);
+		EtcdUris.param(target, "prevValue", "a&b c");
+
+		Assert.assertEquals("/keys/sample?ttl=&prevExist=false&prevIndex=2&prevValue=a%26b%20c", target.toString());
+	}
+
+	@Test
+	public void form() {
+		Assert.assertEquals("value=Hello+world%26%3D%C3%A4",
+				new String(EtcdUris.form("value", "Hello world&=ä"), StandardCharsets.US_ASCII));
+		Assert.assertEquals("dir=true&ttl=60",
+				new String(EtcdUris.form("dir", "true", "ttl", "60"), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void base() {
+		Assert.assertEquals("http://localhost:2379/v2", EtcdUris.base("http://localhost:2379"));
+		Assert.assertEquals("http://localhost:2379/v2", EtcdUris.base("http://localhost:2379/"));
+	}
+}
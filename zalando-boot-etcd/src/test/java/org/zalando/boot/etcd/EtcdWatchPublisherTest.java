@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.RestTemplate;
+
+public class EtcdWatchPublisherTest {
+
+	/**
+	 * client
+	 */
+	private EtcdClient client = new EtcdClient("http://localhost:2379");
+
+	/**
+	 * server
+	 */
+	private MockRestServiceServer server;
+
+	@Before
+	public void before() throws Exception {
+		RestTemplate template = new RestTemplate();
+		server = MockRestServiceServer.createServer(template);
+
+		ReflectionTestUtils.setField(client, "template", template);
+		ReflectionTestUtils.setField(client, "watchTemplate", template);
+	}
+
+	@Test
+	public void publishPausesWithoutDemand() throws Exception {
+		final AtomicInteger polls = new AtomicInteger();
+		final ResponseCreator set = MockRestResponseCreators
+				.withSuccess(new ClassPathResource("EtcdWatchTest_set.json"), MediaType.APPLICATION_JSON);
+		ResponseCreator counting = new ResponseCreator() {
+
+			@Override
+			public ClientHttpResponse createResponse(ClientHttpRequest request) throws IOException {
+				polls.incrementAndGet();
+				return set.createResponse(request);
+			}
+		};
+
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=3"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(counting);
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=4"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(counting);
+
+		final BlockingQueue<EtcdResponse> changes = new LinkedBlockingQueue<>();
+		final Subscription[] subscription = new Subscription[1];
+		new EtcdWatchPublisher(client, "sample", 3, false).subscribe(new Subscriber<EtcdResponse>() {
+
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription[0] = s;
+			}
+
+			@Override
+			public void onNext(EtcdResponse response) {
+				changes.add(response);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				Assert.fail(t.getMessage());
+			}
+
+			@Override
+			public void onComplete() {
+				Assert.fail("complete");
+			}
+		});
+
+		subscription[0].request(1);
+		EtcdResponse change = changes.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull("change", change);
+		Assert.assertEquals("action", "set", change.getAction());
+
+		Thread.sleep(200);
+		Assert.assertEquals("polls without demand", 1, polls.get());
+		Assert.assertTrue("buffered changes", changes.isEmpty());
+
+		subscription[0].request(1);
+		change = changes.poll(5, TimeUnit.SECONDS);
+		subscription[0].cancel();
+		Assert.assertNotNull("change", change);
+		Assert.assertEquals("polls", 2, polls.get());
+
+		server.verify();
+	}
+
+	@Test
+	public void publishSignalsInvalidDemandFromWatchThread() throws Exception {
+		final BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+		final BlockingQueue<Thread> threads = new LinkedBlockingQueue<>();
+		final Subscription[] subscription = new Subscription[1];
+		new EtcdWatchPublisher(client, "sample", 3, false).subscribe(new Subscriber<EtcdResponse>() {
+
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription[0] = s;
+			}
+
+			@Override
+			public void onNext(EtcdResponse response) {
+				Assert.fail("change without demand");
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				threads.add(Thread.currentThread());
+				errors.add(t);
+			}
+
+			@Override
+			public void onComplete() {
+				Assert.fail("complete");
+			}
+		});
+
+		subscription[0].request(0);
+		Throwable error = errors.poll(5, TimeUnit.SECONDS);
+		Assert.assertTrue("error", error instanceof IllegalArgumentException);
+		Assert.assertNotSame("thread", Thread.currentThread(), threads.poll());
+
+		subscription[0].request(-1);
+		Thread.sleep(100);
+		Assert.assertTrue("signalled once", errors.isEmpty());
+
+		server.verify();
+	}
+}
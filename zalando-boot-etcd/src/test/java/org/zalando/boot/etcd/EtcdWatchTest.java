@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2016 Zalando SE
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.zalando.boot.etcd;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.match.MockRestRequestMatchers;
+import org.springframework.test.web.client.response.MockRestResponseCreators;
+import org.springframework.web.client.RestTemplate;
+
+public class EtcdWatchTest {
+
+	/**
+	 * client
+	 */
+	private EtcdClient client = new EtcdClient("http://localhost:2379");
+
+	/**
+	 * server
+	 */
+	private MockRestServiceServer server;
+
+	@Before
+	public void before() throws Exception {
+		RestTemplate template = new RestTemplate();
+		server = MockRestServiceServer.createServer(template);
+
+		ReflectionTestUtils.setField(client, "template", template);
+		ReflectionTestUtils.setField(client, "watchTemplate", template);
+	}
+
+	@Test
+	public void watchResumesAfterClearedIndex() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?recursive=false"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=3"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdWatchTest_set.json"), MediaType.APPLICATION_JSON));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=4"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.BAD_REQUEST)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdWatchTest_cleared.json")));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?recursive=false"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdWatchTest_get.json"), MediaType.APPLICATION_JSON));
+
+		final BlockingQueue<EtcdResponse> changes = new LinkedBlockingQueue<>();
+		final EtcdWatch[] watch = new EtcdWatch[1];
+		watch[0] = client.watch("sample", new EtcdListener() {
+
+			@Override
+			public void onChange(EtcdResponse response) {
+				if ("get".equals(response.getAction())) {
+					watch[0].cancel();
+				}
+				changes.add(response);
+			}
+		});
+
+		EtcdResponse change = changes.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull("change", change);
+		Assert.assertEquals("action", "set", change.getAction());
+		Assert.assertEquals("modified index", 3, change.getNode().getModifiedIndex());
+
+		EtcdResponse current = changes.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull("current", current);
+		Assert.assertEquals("action", "get", current.getAction());
+		Assert.assertEquals("value", "Hello again", current.getNode().getValue());
+
+		Assert.assertTrue("cancelled", watch[0].isCancelled());
+
+		server.verify();
+	}
+
+	@Test
+	public void watchResumesFromEtcdIndexAndSkipsUnchangedNode() throws Exception {
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?recursive=false"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON)
+						.headers(etcdIndex(1000)));
+		server.expect(
+				MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=1001"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators.withStatus(HttpStatus.BAD_REQUEST)
+						.contentType(MediaType.APPLICATION_JSON)
+						.body(new ClassPathResource("EtcdWatchTest_cleared.json")));
+		server.expect(MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?recursive=false"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET))
+				.andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdClientTest_get.json"), MediaType.APPLICATION_JSON)
+						.headers(etcdIndex(2500)));
+		server.expect(
+				MockRestRequestMatchers.requestTo("http://localhost:2379/v2/keys/sample?wait=true&waitIndex=2501"))
+				.andExpect(MockRestRequestMatchers.method(HttpMethod.GET)).andRespond(MockRestResponseCreators
+						.withSuccess(new ClassPathResource("EtcdWatchTest_set.json"), MediaType.APPLICATION_JSON));
+
+		final BlockingQueue<EtcdResponse> changes = new LinkedBlockingQueue<>();
+		final EtcdWatch[] watch = new EtcdWatch[1];
+		watch[0] = client.watch("sample", new EtcdListener() {
+
+			@Override
+			public void onChange(EtcdResponse response) {
+				watch[0].cancel();
+				changes.add(response);
+			}
+		});
+
+		EtcdResponse change = changes.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull("change", change);
+		Assert.assertEquals("action", "set", change.getAction());
+		Assert.assertTrue("no further changes", changes.isEmpty());
+
+		server.verify();
+	}
+
+	private static HttpHeaders etcdIndex(int index) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("X-Etcd-Index", Integer.toString(index));
+		return headers;
+	}
+}